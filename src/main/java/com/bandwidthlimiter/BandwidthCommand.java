@@ -11,6 +11,7 @@ import org.bukkit.entity.Player;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
@@ -22,12 +23,15 @@ import java.util.stream.Collectors;
  *   /bwl info <玩家>             - 查看玩家带宽信息
  *   /bwl default <KB/s>          - 设置默认带宽限制
  *   /bwl list                     - 列出所有在线玩家的带宽状态
+ *   /bwl breakdown [玩家]         - 按数据包类型查看出站流量
+ *   /bwl cluster                  - 查看集群共享预算状态
  *   /bwl reload                   - 重新加载配置
  */
 public class BandwidthCommand implements CommandExecutor, TabCompleter {
 
     private final BandwidthLimiterPlugin plugin;
     private final String PREFIX = ChatColor.GREEN + "[BWL] " + ChatColor.RESET;
+    private static final int BREAKDOWN_LINES = 10;
 
     public BandwidthCommand(BandwidthLimiterPlugin plugin) {
         this.plugin = plugin;
@@ -70,6 +74,14 @@ public class BandwidthCommand implements CommandExecutor, TabCompleter {
                 handleList(sender, manager);
                 break;
 
+            case "breakdown":
+                handleBreakdown(sender, args, manager);
+                break;
+
+            case "cluster":
+                handleCluster(sender, manager);
+                break;
+
             case "reload":
                 handleReload(sender, manager);
                 break;
@@ -153,12 +165,13 @@ public class BandwidthCommand implements CommandExecutor, TabCompleter {
     private void showPlayerInfo(CommandSender sender, Player target, BandwidthManager manager) {
         long limit = manager.getPlayerLimit(target);
         long currentRate = manager.getPlayerCurrentRate(target);
-        boolean hasHandler = manager.hasHandler(target);
+        PlayerBandwidthHandler handler = manager.getHandler(target);
         boolean bypassing = target.hasPermission("bandwidthlimiter.bypass");
 
         sender.sendMessage(PREFIX + ChatColor.AQUA + "=== " + target.getName() + " 带宽信息 ===");
-        sender.sendMessage(PREFIX + "状态: " + (hasHandler
-            ? ChatColor.GREEN + "已限制" : (bypassing
+        sender.sendMessage(PREFIX + "状态: " + (handler != null
+            ? ChatColor.GREEN + "已限制" + ChatColor.GRAY + (handler.isShaping() ? " (整形中)" : " (直通)")
+            : (bypassing
             ? ChatColor.YELLOW + "绕过" : ChatColor.RED + "未注入")));
         sender.sendMessage(PREFIX + "带宽上限: " + ChatColor.YELLOW + limit + " KB/s");
 
@@ -173,6 +186,82 @@ public class BandwidthCommand implements CommandExecutor, TabCompleter {
         } else {
             sender.sendMessage(PREFIX + "当前速率: " + ChatColor.GRAY + "N/A");
         }
+
+        if (handler == null) {
+            return;
+        }
+
+        RateEstimator rate = handler.getWriteRate();
+        sender.sendMessage(PREFIX + "平均速率: " + ChatColor.WHITE
+            + String.format("10s %.1f / 60s %.1f KB/s", rate.getRate10s() / 1024.0, rate.getRate60s() / 1024.0)
+            + ChatColor.GRAY + String.format(" (瞬时 %.1f KB/s)", rate.getInstantRate() / 1024.0));
+
+        long effectiveKBps = handler.getWriteLimit() / 1024;
+        long burstKBps = handler.getBurstExtra() / 1024;
+        if (effectiveKBps != limit) {
+            String reason = handler.getQuotaCap() > 0 && handler.getWriteLimit() == handler.getQuotaCap()
+                ? " (配额限速)"
+                : burstKBps > 0 ? " (突发 +" + burstKBps + " KB/s)" : " (自适应)";
+            sender.sendMessage(PREFIX + "生效上限: " + ChatColor.YELLOW + effectiveKBps + " KB/s"
+                + ChatColor.GRAY + reason);
+        }
+
+        long learnedKBps = handler.getLearnedCapacity() / 1024;
+        if (learnedKBps > 0) {
+            sender.sendMessage(PREFIX + "链路能力: " + ChatColor.WHITE + learnedKBps + " KB/s"
+                + ChatColor.GRAY + " (跨会话学习)");
+        }
+
+        TransferQuotaManager quotas = manager.getQuotas();
+        if (quotas.isEnabled()) {
+            UUID uuid = target.getUniqueId();
+            sender.sendMessage(PREFIX + "今日流量: " + ChatColor.WHITE
+                + formatQuota(quotas.getDailyUsage(uuid), quotas.getDailyQuota()));
+            sender.sendMessage(PREFIX + "本月流量: " + ChatColor.WHITE
+                + formatQuota(quotas.getMonthlyUsage(uuid), quotas.getMonthlyQuota()));
+            if (handler.getQuotaCap() > 0) {
+                sender.sendMessage(PREFIX + ChatColor.RED + "已超出流量配额，限速至 "
+                    + handler.getQuotaCap() / 1024 + " KB/s");
+            }
+        }
+
+        LoadSheddingHandler shedding = handler.getLoadShedding();
+        if (shedding != null && shedding.getDroppedPackets() > 0) {
+            sender.sendMessage(PREFIX + "积压丢包: " + ChatColor.WHITE + shedding.getDroppedPackets()
+                + ChatColor.GRAY + String.format(" 个 (约 %.1f KB)", shedding.getDroppedBytes() / 1024.0));
+        }
+
+        TcpInfoSampler.Snapshot tcp = handler.getTcpInfo();
+        if (tcp == null) {
+            sender.sendMessage(PREFIX + "TCP_INFO: " + ChatColor.GRAY + "不可用 (非 epoll 传输)");
+            return;
+        }
+        sender.sendMessage(PREFIX + "RTT: " + ChatColor.WHITE
+            + String.format("%.1f ms", tcp.rttMicros() / 1000.0)
+            + ChatColor.GRAY + String.format(" (±%.1f ms)", tcp.rttVarMicros() / 1000.0));
+        sender.sendMessage(PREFIX + "拥塞窗口: " + ChatColor.WHITE + tcp.sndCwnd()
+            + ChatColor.GRAY + " × " + tcp.sndMss() + " B");
+        sender.sendMessage(PREFIX + "未确认: " + ChatColor.WHITE + tcp.unacked()
+            + ChatColor.GRAY + " 段 (" + tcp.unackedBytes() / 1024 + " KB)");
+        sender.sendMessage(PREFIX + "重传: " + ChatColor.WHITE + tcp.totalRetrans()
+            + ChatColor.GRAY + " (+" + tcp.retransDelta() + ")");
+        sender.sendMessage(PREFIX + "发送队列: " + ChatColor.WHITE
+            + tcp.pendingBytes() / 1024 + " KB" + ChatColor.GRAY
+            + " / 整形队列 " + handler.queueSize() / 1024 + " KB");
+        long capacity = tcp.estimatedCapacity();
+        if (capacity > 0) {
+            sender.sendMessage(PREFIX + "路径估算: " + ChatColor.WHITE
+                + String.format("%.1f KB/s", capacity / 1024.0));
+        }
+    }
+
+    private static String formatQuota(long used, long quota) {
+        String usedStr = String.format("%.1f MB", used / (1024.0 * 1024.0));
+        if (quota <= 0) {
+            return usedStr + ChatColor.GRAY + " (不限)";
+        }
+        return usedStr + ChatColor.GRAY + String.format(" / %d MB (%.1f%%)",
+            quota / (1024 * 1024), used * 100.0 / quota);
     }
 
     private void handleDefault(CommandSender sender, String[] args, BandwidthManager manager) {
@@ -220,7 +309,8 @@ public class BandwidthCommand implements CommandExecutor, TabCompleter {
             if (player.hasPermission("bandwidthlimiter.bypass")) {
                 status = ChatColor.YELLOW + "[绕过]";
             } else if (hasHandler) {
-                status = ChatColor.GREEN + "[限制中]";
+                PlayerBandwidthHandler handler = manager.getHandler(player);
+                status = ChatColor.GREEN + (handler != null && handler.isShaping() ? "[整形中]" : "[直通]");
             } else {
                 status = ChatColor.RED + "[未注入]";
             }
@@ -238,8 +328,84 @@ public class BandwidthCommand implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void handleBreakdown(CommandSender sender, String[] args, BandwidthManager manager) {
+        long[] bytes = new long[PacketTypes.MAX_TYPES];
+        long[] packets = new long[PacketTypes.MAX_TYPES];
+        String title;
+
+        if (args.length < 2) {
+            manager.copyServerPacketStats(bytes, packets);
+            title = "全服";
+        } else {
+            Player target = Bukkit.getPlayerExact(args[1]);
+            if (target == null) {
+                sender.sendMessage(PREFIX + ChatColor.RED + "玩家 " + args[1] + " 不在线");
+                return;
+            }
+            PacketStatsHandler stats = manager.getPacketStats(target);
+            if (stats == null) {
+                sender.sendMessage(PREFIX + ChatColor.RED + "玩家 " + target.getName() + " 没有流量统计");
+                return;
+            }
+            stats.copyTo(bytes, packets);
+            title = target.getName();
+        }
+
+        int typeCount = PacketTypes.count();
+        long totalBytes = 0;
+        List<Integer> types = new ArrayList<>();
+        for (int i = 0; i < typeCount; i++) {
+            if (packets[i] > 0) {
+                types.add(i);
+                totalBytes += bytes[i];
+            }
+        }
+        types.sort((a, b) -> Long.compare(bytes[b], bytes[a]));
+
+        sender.sendMessage(PREFIX + ChatColor.AQUA + "=== " + title + " 出站流量 (按数据包类型) ===");
+        if (types.isEmpty()) {
+            sender.sendMessage(PREFIX + ChatColor.GRAY + "暂无数据");
+            return;
+        }
+        sender.sendMessage(PREFIX + "总计: " + ChatColor.YELLOW
+            + String.format("%.1f KB", totalBytes / 1024.0));
+
+        for (int i = 0; i < Math.min(BREAKDOWN_LINES, types.size()); i++) {
+            int type = types.get(i);
+            double share = totalBytes > 0 ? bytes[type] * 100.0 / totalBytes : 0;
+            sender.sendMessage(PREFIX + ChatColor.WHITE + PacketTypes.nameOf(type) + ChatColor.GRAY + " - "
+                + ChatColor.YELLOW + String.format("%.1f KB", bytes[type] / 1024.0)
+                + ChatColor.GRAY + String.format(" (%.1f%%, %d 个)", share, packets[type]));
+        }
+    }
+
+    private void handleCluster(CommandSender sender, BandwidthManager manager) {
+        ClusterCoordinator cluster = manager.getCluster();
+        if (cluster == null) {
+            sender.sendMessage(PREFIX + ChatColor.GRAY + "集群协调未启用");
+            return;
+        }
+
+        long share = cluster.getLastShare();
+        sender.sendMessage(PREFIX + ChatColor.AQUA + "=== 集群共享预算 ===");
+        sender.sendMessage(PREFIX + "本节点: " + ChatColor.WHITE + cluster.getNodeId());
+        sender.sendMessage(PREFIX + "共享预算: " + ChatColor.YELLOW + cluster.getBudget() / 1024 + " KB/s");
+        sender.sendMessage(PREFIX + "本节点份额: " + ChatColor.YELLOW
+            + (share >= 0 ? share / 1024 + " KB/s" : "N/A"));
+
+        for (ClusterCoordinator.PeerState peer : cluster.getPeerStates()) {
+            boolean alive = cluster.isAlive(peer);
+            sender.sendMessage(PREFIX + (alive ? ChatColor.GREEN + "[在线] " : ChatColor.RED + "[失联] ")
+                + ChatColor.WHITE + peer.getNodeId() + ChatColor.GRAY + " (" + peer.getAddress() + ")"
+                + String.format(" - 出站 %.1f KB/s, 需求 %.1f KB/s",
+                    peer.getEgressBps() / 1024.0, peer.getDemandBps() / 1024.0));
+        }
+    }
+
     private void handleReload(CommandSender sender, BandwidthManager manager) {
         manager.loadConfig();
+        plugin.getBandwidthService().loadConfig(plugin.getConfig());
+        plugin.getEventLog().loadConfig(plugin.getConfig());
         sender.sendMessage(PREFIX + ChatColor.GREEN + "配置已重新加载！");
     }
 
@@ -255,6 +421,10 @@ public class BandwidthCommand implements CommandExecutor, TabCompleter {
             + ChatColor.GRAY + " - 设置/查看默认限制");
         sender.sendMessage(PREFIX + ChatColor.YELLOW + "/bwl list"
             + ChatColor.GRAY + " - 列出所有玩家状态");
+        sender.sendMessage(PREFIX + ChatColor.YELLOW + "/bwl breakdown [玩家]"
+            + ChatColor.GRAY + " - 按数据包类型查看流量");
+        sender.sendMessage(PREFIX + ChatColor.YELLOW + "/bwl cluster"
+            + ChatColor.GRAY + " - 查看集群共享预算");
         sender.sendMessage(PREFIX + ChatColor.YELLOW + "/bwl reload"
             + ChatColor.GRAY + " - 重新加载配置");
     }
@@ -267,14 +437,15 @@ public class BandwidthCommand implements CommandExecutor, TabCompleter {
 
         if (args.length == 1) {
             return filterCompletions(
-                Arrays.asList("set", "remove", "info", "default", "list", "reload"),
+                Arrays.asList("set", "remove", "info", "default", "list", "breakdown", "cluster", "reload"),
                 args[0]
             );
         }
 
         if (args.length == 2) {
             String sub = args[0].toLowerCase();
-            if (sub.equals("set") || sub.equals("remove") || sub.equals("info") || sub.equals("check")) {
+            if (sub.equals("set") || sub.equals("remove") || sub.equals("info") || sub.equals("check")
+                || sub.equals("breakdown")) {
                 return filterCompletions(
                     Bukkit.getOnlinePlayers().stream()
                         .map(Player::getName)
@@ -0,0 +1,56 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+
+/**
+ * 带宽状态事件的公共字段
+ * 事件在异步线程触发，监听器中不要直接操作世界或实体
+ */
+public abstract class BandwidthEvent extends Event {
+
+    private final Player player;
+    private final long limit;
+    private final long rate;
+    private final long backlog;
+
+    protected BandwidthEvent(Player player, long limit, long rate, long backlog) {
+        super(true);
+        this.player = player;
+        this.limit = limit;
+        this.rate = rate;
+        this.backlog = backlog;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * 生效的出站限制 (bytes/s)
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * 当前出站速率 (bytes/s)
+     */
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * 带宽使用率 (当前速率 / 生效限制)
+     */
+    public double getUtilization() {
+        return limit > 0 ? (double) rate / limit : 0;
+    }
+
+    /**
+     * 整形队列中等待发送的字节数
+     */
+    public long getBacklog() {
+        return backlog;
+    }
+}
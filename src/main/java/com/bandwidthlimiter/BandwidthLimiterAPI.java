@@ -0,0 +1,56 @@
+package com.bandwidthlimiter;
+
+import java.util.UUID;
+
+/**
+ * BandwidthLimiter 对外 API
+ *
+ * 通过 Bukkit ServicesManager 获取:
+ * <pre>
+ *   BandwidthLimiterAPI api = Bukkit.getServicesManager().load(BandwidthLimiterAPI.class);
+ * </pre>
+ *
+ * 所有查询都是无锁读取，可在任意线程 (包括 Netty EventLoop) 调用。
+ * 小地图、自定义粒子、资源流式传输等插件可以据此在源头降低发送量，
+ * 或监听 {@link BandwidthSaturatedEvent} / {@link BandwidthRecoveredEvent}。
+ * 未被限制的玩家 (未注入或拥有绕过权限): 数值查询返回 -1，
+ * {@link #isShaped(UUID)} 和 {@link #isSaturated(UUID)} 返回 false。
+ */
+public interface BandwidthLimiterAPI {
+
+    /**
+     * 玩家当前是否被限制 (已注入带宽处理器)，未限制时返回 false
+     */
+    boolean isShaped(UUID player);
+
+    /**
+     * 实际生效的出站限制 (bytes/s)，包含自适应、突发、集群预算的调整
+     */
+    long getLimit(UUID player);
+
+    /**
+     * 配置的出站限制 (bytes/s)
+     */
+    long getConfiguredLimit(UUID player);
+
+    /**
+     * 当前出站速率 (bytes/s)
+     */
+    long getCurrentRate(UUID player);
+
+    /**
+     * 带宽使用率 (当前速率 / 生效限制)，未限制时返回 -1
+     */
+    double getUtilization(UUID player);
+
+    /**
+     * 整形队列中等待发送的字节数
+     */
+    long getBacklog(UUID player);
+
+    /**
+     * 玩家当前是否处于带宽饱和状态 (最近一次触发的是 {@link BandwidthSaturatedEvent})，
+     * 未限制时返回 false
+     */
+    boolean isSaturated(UUID player);
+}
@@ -1,5 +1,6 @@
 package com.bandwidthlimiter;
 
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -10,6 +11,9 @@ public class BandwidthLimiterPlugin extends JavaPlugin {
 
     private static BandwidthLimiterPlugin instance;
     private BandwidthManager bandwidthManager;
+    private BandwidthService bandwidthService;
+    private EventLog eventLog;
+    private TaskScheduler taskScheduler;
     private boolean isFolia = false;
 
     @Override
@@ -19,13 +23,26 @@ public class BandwidthLimiterPlugin extends JavaPlugin {
         // 检测是否运行在 Folia 上
         detectFolia();
 
+        // 绑定调度器 (只在启动时选择一次实现)
+        taskScheduler = TaskScheduler.create(this);
+
         // 保存默认配置
         saveDefaultConfig();
 
+        // 事件日志 (其他组件都会写入，最先启动)
+        eventLog = new EventLog(this);
+        eventLog.loadConfig(getConfig());
+
         // 初始化带宽管理器
         bandwidthManager = new BandwidthManager(this);
         bandwidthManager.loadConfig();
 
+        // 注册对外 API 服务
+        bandwidthService = new BandwidthService(this, bandwidthManager);
+        bandwidthService.loadConfig(getConfig());
+        getServer().getServicesManager().register(
+            BandwidthLimiterAPI.class, bandwidthService, this, ServicePriority.Normal);
+
         // 注册事件监听器
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
 
@@ -44,9 +61,22 @@ public class BandwidthLimiterPlugin extends JavaPlugin {
     @Override
     public void onDisable() {
         // 清理所有玩家的带宽处理器
+        if (bandwidthService != null) {
+            bandwidthService.stop();
+            getServer().getServicesManager().unregisterAll(this);
+        }
         if (bandwidthManager != null) {
+            bandwidthManager.stopCluster();
+            bandwidthManager.getQuotas().stop();
+            bandwidthManager.getProfiles().stop();
             bandwidthManager.removeAllHandlers();
         }
+        if (eventLog != null) {
+            eventLog.stop();
+        }
+        if (taskScheduler != null) {
+            taskScheduler.cancelAll();
+        }
         getLogger().info("BandwidthLimiter 已禁用");
     }
 
@@ -71,6 +101,18 @@ public class BandwidthLimiterPlugin extends JavaPlugin {
         return bandwidthManager;
     }
 
+    public BandwidthService getBandwidthService() {
+        return bandwidthService;
+    }
+
+    public EventLog getEventLog() {
+        return eventLog;
+    }
+
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+
     public boolean isFolia() {
         return isFolia;
     }
@@ -8,9 +8,17 @@ import org.bukkit.entity.Player;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 带宽管理器 - 负责管理所有玩家的带宽限制
@@ -20,13 +28,45 @@ public class BandwidthManager {
 
     private final BandwidthLimiterPlugin plugin;
     private final Map<UUID, PlayerBandwidthHandler> handlers = new ConcurrentHashMap<>();
-    private final Map<UUID, Long> playerLimits = new ConcurrentHashMap<>();
-
-    private long defaultLimitKBps = 512; // 默认 512 KB/s
+    private final LimitTable limits = new LimitTable(512); // 默认 512 KB/s
+    private final LongAdder[] serverPacketBytes = PacketStatsHandler.newServerCounters();
+    private final LongAdder[] serverPacketCounts = PacketStatsHandler.newServerCounters();
+
+    private boolean adaptiveEnabled = true;
+    private long adaptiveMinKBps = 64;
+    private double adaptiveHeadroom = 1.5;
+    private boolean passThroughEnabled = true;
+    private double passThroughEscalateRatio = 0.7;
+    private double passThroughDeescalateRatio = 0.5;
+    private long passThroughCooldownSeconds = 10;
+    private volatile LoadSheddingPolicy sheddingPolicy = LoadSheddingPolicy.disabled();
+
+    private boolean burstEnabled = true;
+    private double burstMultiplier = 3.0;
+    private long burstDurationSeconds = 10;
+    private long burstDecaySeconds = 5;
+    private double burstTeleportDistance = 128;
+    private long burstServerBudgetKBps = 0; // 0 = 不限制
+    private final AtomicLong burstInUse = new AtomicLong(); // bytes/s
+
+    private final TransferQuotaManager quotas;
+    private final CapacityProfileStore profiles;
+
+    private volatile ClusterCoordinator cluster;
+    private final Object clusterLock = new Object(); // 串行化停止协调与应用份额
+    private TaskScheduler.Task clusterTask;
     private static final String HANDLER_NAME = "bandwidth_limiter";
+    private static final String STATS_HANDLER_NAME = "bandwidth_limiter_stats";
+    private static final String SHEDDING_HANDLER_NAME = "bandwidth_limiter_shedding";
+
+    /** 集群需求估算: 最低需求 (bytes/s) 和速率增长余量 */
+    private static final long MIN_DEMAND = 8 * 1024;
+    private static final double DEMAND_GROWTH = 1.25;
 
     public BandwidthManager(BandwidthLimiterPlugin plugin) {
         this.plugin = plugin;
+        this.quotas = new TransferQuotaManager(plugin, this);
+        this.profiles = new CapacityProfileStore(plugin, this);
     }
 
     /**
@@ -36,33 +76,195 @@ public class BandwidthManager {
         plugin.reloadConfig();
         FileConfiguration config = plugin.getConfig();
 
-        defaultLimitKBps = config.getLong("default-limit-kbps", 512);
+        limits.setDefault(config.getLong("default-limit-kbps", 512));
+
+        // 自适应整形 (仅 epoll 传输下生效)
+        adaptiveEnabled = config.getBoolean("adaptive-shaping.enabled", true);
+        adaptiveMinKBps = Math.max(1, config.getLong("adaptive-shaping.min-limit-kbps", 64));
+        adaptiveHeadroom = Math.max(1.0, config.getDouble("adaptive-shaping.headroom", 1.5));
+
+        // 直通模式: 速率接近限制时才切换到完整整形
+        passThroughEnabled = config.getBoolean("pass-through.enabled", true);
+        passThroughEscalateRatio = Math.max(0.0, config.getDouble("pass-through.escalate-ratio", 0.7));
+        passThroughDeescalateRatio = Math.max(0.0, config.getDouble("pass-through.deescalate-ratio", 0.5));
+        passThroughCooldownSeconds = Math.max(0, config.getLong("pass-through.cooldown-seconds", 10));
+
+        // 加入/传送突发额度
+        burstEnabled = config.getBoolean("burst.enabled", true);
+        burstMultiplier = Math.max(1.0, config.getDouble("burst.multiplier", 3.0));
+        burstDurationSeconds = Math.max(0, config.getLong("burst.duration-seconds", 10));
+        burstDecaySeconds = Math.max(0, config.getLong("burst.decay-seconds", 5));
+        burstTeleportDistance = config.getDouble("burst.teleport-distance", 128);
+        burstServerBudgetKBps = Math.max(0, config.getLong("burst.server-budget-kbps", 0));
+
+        // 积压丢包策略
+        sheddingPolicy = new LoadSheddingPolicy(
+            config.getBoolean("load-shedding.enabled", true),
+            config.getLong("load-shedding.soft-watermark-kb", 256) * 1024,
+            config.getLong("load-shedding.hard-watermark-kb", 1024) * 1024,
+            config.getStringList("load-shedding.soft-types"),
+            config.getStringList("load-shedding.hard-types")
+        );
 
         // 加载每个玩家的独立限制
-        playerLimits.clear();
+        limits.clear();
         if (config.isConfigurationSection("player-limits")) {
             for (String key : config.getConfigurationSection("player-limits").getKeys(false)) {
                 try {
                     UUID uuid = UUID.fromString(key);
                     long limit = config.getLong("player-limits." + key);
-                    playerLimits.put(uuid, limit);
+                    limits.set(uuid, limit);
                 } catch (IllegalArgumentException e) {
                     // 尝试通过玩家名查找
                     Player p = Bukkit.getPlayerExact(key);
                     if (p != null) {
                         long limit = config.getLong("player-limits." + key);
-                        playerLimits.put(p.getUniqueId(), limit);
+                        limits.set(p.getUniqueId(), limit);
                     }
                 }
             }
         }
 
+        // 链路能力档案 (需在更新在线玩家之前加载)
+        profiles.loadConfig(config);
+
         // 更新所有已在线玩家的限制
         for (Player player : Bukkit.getOnlinePlayers()) {
             updatePlayerLimit(player);
         }
 
-        plugin.getLogger().info("配置已重新加载 - 默认限制: " + defaultLimitKBps + " KB/s");
+        // 流量配额
+        quotas.loadConfig(config);
+
+        // 集群协调
+        stopCluster();
+        if (config.getBoolean("cluster.enabled", false)) {
+            startCluster(config);
+        }
+
+        plugin.getLogger().info("配置已重新加载 - 默认限制: " + limits.getDefault() + " KB/s");
+    }
+
+    private void startCluster(FileConfiguration config) {
+        try {
+            List<InetSocketAddress> peers = new ArrayList<>();
+            for (String peer : config.getStringList("cluster.peers")) {
+                peers.add(parseAddress(peer));
+            }
+            cluster = new ClusterCoordinator(
+                plugin.getLogger(),
+                config.getString("cluster.node-id", "node-" + plugin.getServer().getPort()),
+                parseAddress(config.getString("cluster.bind", "127.0.0.1:25700")),
+                peers,
+                config.getLong("cluster.shared-budget-kbps", 102400) * 1024,
+                config.getLong("cluster.static-share-kbps", 0) * 1024,
+                config.getLong("cluster.peer-timeout-ms", 2000),
+                config.getString("cluster.secret", "")
+            );
+            cluster.start();
+
+            long interval = Math.max(50, config.getLong("cluster.rebalance-interval-ms", 250));
+            clusterTask = plugin.getTaskScheduler().runAsyncTimer(this::rebalanceCluster, interval, interval);
+        } catch (Exception e) {
+            plugin.getLogger().severe("集群协调启动失败: " + e.getMessage());
+            stopCluster();
+        }
+    }
+
+    /**
+     * 停止集群协调并解除所有玩家的预算上限
+     */
+    public void stopCluster() {
+        if (clusterTask != null) {
+            clusterTask.cancel();
+            clusterTask = null;
+        }
+        ClusterCoordinator coordinator = cluster;
+        if (coordinator != null) {
+            coordinator.stop();
+            // 取消任务不会等待已开始的平衡，加锁后正在应用的份额要么已完成，要么会发现协调器已更换
+            synchronized (clusterLock) {
+                cluster = null;
+                for (PlayerBandwidthHandler handler : handlers.values()) {
+                    handler.setBudgetCap(-1);
+                }
+            }
+        }
+    }
+
+    /**
+     * 与其他节点交换状态，并把本节点分到的份额按需求分配给各玩家
+     */
+    private void rebalanceCluster() {
+        ClusterCoordinator coordinator = cluster;
+        if (coordinator == null) {
+            return;
+        }
+
+        long egress = 0;
+        long localDemand = 0;
+        for (PlayerBandwidthHandler handler : handlers.values()) {
+            egress += handler.getCurrentWriteRate();
+            localDemand += demandOf(handler);
+        }
+
+        long share = coordinator.rebalance(egress, localDemand);
+
+        synchronized (clusterLock) {
+            // 期间协调已停止或重新加载，不再应用旧协调器的份额
+            if (coordinator != cluster) {
+                return;
+            }
+            for (PlayerBandwidthHandler handler : handlers.values()) {
+                if (localDemand <= share) {
+                    handler.setBudgetCap(-1);
+                } else {
+                    long cap = (long) ((double) demandOf(handler) * share / localDemand);
+                    handler.setBudgetCap(Math.max(MIN_DEMAND, cap));
+                }
+            }
+        }
+    }
+
+    /**
+     * 估算玩家的需求: 当前速率留出增长余量，加上整形队列中的积压，不超过其限制
+     */
+    private long demandOf(PlayerBandwidthHandler handler) {
+        long demand = (long) (handler.getCurrentWriteRate() * DEMAND_GROWTH) + handler.queueSize();
+        long limit = handler.getConfiguredWriteLimit() + handler.getBurstExtra();
+        if (limit > 0) {
+            demand = Math.min(demand, limit);
+        }
+        return Math.max(MIN_DEMAND, demand);
+    }
+
+    /**
+     * 获取流量配额管理器
+     */
+    public TransferQuotaManager getQuotas() {
+        return quotas;
+    }
+
+    /**
+     * 获取链路能力档案
+     */
+    public CapacityProfileStore getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * 获取集群协调器，未启用时返回 null
+     */
+    public ClusterCoordinator getCluster() {
+        return cluster;
+    }
+
+    private static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("地址格式应为 host:port: " + address);
+        }
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
     }
 
     /**
@@ -84,7 +286,7 @@ public class BandwidthManager {
             }
 
             if (connection == null) {
-                plugin.getLogger().warning("无法获取玩家 " + player.getName() + " 的连接对象");
+                plugin.getEventLog().error("无法获取玩家的连接对象", player.getUniqueId(), player.getName());
                 return null;
             }
 
@@ -94,7 +296,7 @@ public class BandwidthManager {
                 "net.minecraft.network.Connection");
 
             if (networkManager == null) {
-                plugin.getLogger().warning("无法获取玩家 " + player.getName() + " 的网络管理器");
+                plugin.getEventLog().error("无法获取玩家的网络管理器", player.getUniqueId(), player.getName());
                 return null;
             }
 
@@ -108,8 +310,7 @@ public class BandwidthManager {
             return (Channel) channel;
 
         } catch (Exception e) {
-            plugin.getLogger().severe("获取玩家 " + player.getName() + " 的 Channel 失败: " + e.getMessage());
-            e.printStackTrace();
+            plugin.getEventLog().error("获取玩家的 Channel 失败", e, player.getUniqueId(), player.getName());
             return null;
         }
     }
@@ -119,7 +320,7 @@ public class BandwidthManager {
      */
     public void injectPlayer(Player player) {
         if (player.hasPermission("bandwidthlimiter.bypass")) {
-            plugin.getLogger().info("玩家 " + player.getName() + " 拥有绕过权限，跳过注入");
+            plugin.getEventLog().record(EventLog.Type.BYPASS, player.getUniqueId(), player.getName(), 0);
             return;
         }
 
@@ -140,6 +341,12 @@ public class BandwidthManager {
                 if (pipeline.get(HANDLER_NAME) != null) {
                     pipeline.remove(HANDLER_NAME);
                 }
+                if (pipeline.get(STATS_HANDLER_NAME) != null) {
+                    pipeline.remove(STATS_HANDLER_NAME);
+                }
+                if (pipeline.get(SHEDDING_HANDLER_NAME) != null) {
+                    pipeline.remove(SHEDDING_HANDLER_NAME);
+                }
 
                 // 创建并添加带宽限制处理器
                 // writeLimit: 出站限制 (服务器->客户端)
@@ -151,22 +358,39 @@ public class BandwidthManager {
                     1000        // 检查间隔 1 秒
                 );
 
-                // 在 encoder 之后添加，这样可以限制编码后的实际字节流
+                handler.setAdaptive(adaptiveEnabled, adaptiveMinKBps * 1024, adaptiveHeadroom);
+                applyPassThrough(handler);
+
+                // 添加到 Pipeline 最前端 (最靠近 socket)，
+                // 这样看到的是经过编码、压缩、加密后的实际字节流；
+                // 切换到整形模式时整形阶段插入在它前面
+                pipeline.addFirst(HANDLER_NAME, handler);
+
+                // 按数据包类型统计: 放在 encoder 之前 (出站方向)，看到的是数据包对象
                 if (pipeline.get("encoder") != null) {
-                    pipeline.addAfter("encoder", HANDLER_NAME, handler);
-                } else {
-                    // 找不到 encoder，添加到最前面
-                    pipeline.addFirst(HANDLER_NAME, handler);
+                    PacketStatsHandler stats = new PacketStatsHandler(
+                        handler, serverPacketBytes, serverPacketCounts);
+                    pipeline.addAfter("encoder", STATS_HANDLER_NAME, stats);
+                    handler.setPacketStats(stats);
+
+                    // 积压丢包: 放在统计之前 (出站方向)，被丢弃的包不计入发送统计
+                    LoadSheddingHandler shedding = new LoadSheddingHandler(handler, sheddingPolicy);
+                    pipeline.addAfter(STATS_HANDLER_NAME, SHEDDING_HANDLER_NAME, shedding);
+                    handler.setLoadShedding(shedding);
                 }
 
                 handlers.put(player.getUniqueId(), handler);
+                quotas.apply(player.getUniqueId(), handler);
+                // 在注册之后应用档案: 档案此时仍在异步读取的话，读取完成后的补充初始化一定能看到该处理器
+                profiles.apply(player.getUniqueId(), handler);
+
+                // 初始区块加载是整个会话中最大的一次传输
+                grantBurst(player);
 
-                plugin.getLogger().info("已为玩家 " + player.getName()
-                    + " 注入带宽限制: " + limitKBps + " KB/s");
+                plugin.getEventLog().record(EventLog.Type.INJECT, player.getUniqueId(), player.getName(), limitKBps);
 
             } catch (Exception e) {
-                plugin.getLogger().severe("注入玩家 " + player.getName()
-                    + " 的带宽限制处理器失败: " + e.getMessage());
+                plugin.getEventLog().error("注入带宽限制处理器失败", e, player.getUniqueId(), player.getName());
             }
         });
     }
@@ -175,8 +399,14 @@ public class BandwidthManager {
      * 移除玩家的带宽限制处理器
      */
     public void removePlayer(Player player) {
-        PlayerBandwidthHandler handler = handlers.remove(player.getUniqueId());
+        PlayerBandwidthHandler handler = handlers.get(player.getUniqueId());
         if (handler == null) return;
+        // 计入最后一次采样之后的流量，再移除处理器
+        quotas.record(player.getUniqueId(), handler);
+        if (!handlers.remove(player.getUniqueId(), handler)) return;
+        profiles.record(player.getUniqueId(), handler);
+        plugin.getEventLog().record(EventLog.Type.REMOVE, player.getUniqueId(), player.getName(),
+            handler.getTotalWritten());
 
         Channel channel = getPlayerChannel(player);
         if (channel == null) return;
@@ -184,9 +414,14 @@ public class BandwidthManager {
         channel.eventLoop().execute(() -> {
             try {
                 ChannelPipeline pipeline = channel.pipeline();
+                if (pipeline.get(SHEDDING_HANDLER_NAME) != null) {
+                    pipeline.remove(SHEDDING_HANDLER_NAME);
+                }
+                if (pipeline.get(STATS_HANDLER_NAME) != null) {
+                    pipeline.remove(STATS_HANDLER_NAME);
+                }
                 if (pipeline.get(HANDLER_NAME) != null) {
                     pipeline.remove(HANDLER_NAME);
-                    plugin.getLogger().info("已移除玩家 " + player.getName() + " 的带宽限制");
                 }
             } catch (Exception e) {
                 // 玩家可能已断开，忽略错误
@@ -204,19 +439,85 @@ public class BandwidthManager {
             long limitBps = limitKBps * 1024;
             handler.setWriteLimit(limitBps);
             handler.setReadLimit(0);
-            plugin.getLogger().info("已更新玩家 " + player.getName()
-                + " 的带宽限制为: " + limitKBps + " KB/s");
+            handler.setAdaptive(adaptiveEnabled, adaptiveMinKBps * 1024, adaptiveHeadroom);
+            applyPassThrough(handler);
+            profiles.apply(player.getUniqueId(), handler);
+            LoadSheddingHandler shedding = handler.getLoadShedding();
+            if (shedding != null) {
+                shedding.setPolicy(sheddingPolicy);
+            }
+            plugin.getEventLog().record(EventLog.Type.LIMIT, player.getUniqueId(), player.getName(), limitKBps);
         } else {
             // 如果处理器不存在，尝试重新注入
             injectPlayer(player);
         }
     }
 
+    private void applyPassThrough(PlayerBandwidthHandler handler) {
+        handler.setPassThrough(passThroughEnabled, passThroughEscalateRatio, passThroughDeescalateRatio,
+            TimeUnit.SECONDS.toNanos(passThroughCooldownSeconds));
+    }
+
+    /**
+     * 授予玩家突发额度 (加入、切换世界、远距离传送后调用)
+     * 出站限制提高到配置值的 multiplier 倍，持续 duration-seconds 秒后在 decay-seconds 秒内衰减回配置值。
+     * 设置了全服突发预算时，所有玩家同时使用的额外带宽总和不超过预算。
+     */
+    public void grantBurst(Player player) {
+        if (!burstEnabled || burstMultiplier <= 1.0) {
+            return;
+        }
+        PlayerBandwidthHandler handler = handlers.get(player.getUniqueId());
+        if (handler == null) {
+            return;
+        }
+
+        long extra = (long) (getPlayerLimit(player) * 1024 * (burstMultiplier - 1.0));
+        AtomicLong budget = null;
+        if (burstServerBudgetKBps > 0) {
+            extra = reserveBurst(extra, burstServerBudgetKBps * 1024);
+            budget = burstInUse;
+        }
+        if (extra <= 0) {
+            return;
+        }
+
+        handler.grantBurst(extra,
+            TimeUnit.SECONDS.toNanos(burstDurationSeconds),
+            TimeUnit.SECONDS.toNanos(burstDecaySeconds),
+            budget);
+    }
+
+    /**
+     * 从全服突发预算中预留额度
+     *
+     * @return 实际预留的额度 (bytes/s)，预算用尽时返回 0
+     */
+    private long reserveBurst(long requested, long budget) {
+        while (true) {
+            long inUse = burstInUse.get();
+            long granted = Math.min(requested, budget - inUse);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (burstInUse.compareAndSet(inUse, inUse + granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * 触发突发额度的最小传送距离 (方块)
+     */
+    public double getBurstTeleportDistance() {
+        return burstTeleportDistance;
+    }
+
     /**
      * 设置特定玩家的带宽限制 (KB/s)
      */
     public void setPlayerLimit(UUID uuid, long limitKBps) {
-        playerLimits.put(uuid, limitKBps);
+        limits.set(uuid, limitKBps);
 
         // 保存到配置
         plugin.getConfig().set("player-limits." + uuid.toString(), limitKBps);
@@ -233,7 +534,7 @@ public class BandwidthManager {
      * 移除特定玩家的独立限制 (恢复使用默认值)
      */
     public void removePlayerLimit(UUID uuid) {
-        playerLimits.remove(uuid);
+        limits.remove(uuid);
         plugin.getConfig().set("player-limits." + uuid.toString(), null);
         plugin.saveConfig();
 
@@ -247,7 +548,7 @@ public class BandwidthManager {
      * 获取玩家的带宽限制 (KB/s)
      */
     public long getPlayerLimit(Player player) {
-        return playerLimits.getOrDefault(player.getUniqueId(), defaultLimitKBps);
+        return limits.get(player.getUniqueId());
     }
 
     /**
@@ -256,23 +557,70 @@ public class BandwidthManager {
     public long getPlayerCurrentRate(Player player) {
         PlayerBandwidthHandler handler = handlers.get(player.getUniqueId());
         if (handler != null) {
-            return handler.trafficCounter().lastWrittenBytes();
+            return handler.getCurrentWriteRate();
         }
         return -1;
     }
 
+    /**
+     * 获取玩家的带宽处理器，未注入时返回 null
+     */
+    public PlayerBandwidthHandler getHandler(Player player) {
+        return handlers.get(player.getUniqueId());
+    }
+
+    /**
+     * 按 UUID 获取玩家的带宽处理器，未注入时返回 null (无锁读取，可在任意线程调用)
+     */
+    public PlayerBandwidthHandler getHandler(UUID uuid) {
+        return handlers.get(uuid);
+    }
+
+    /**
+     * 所有已注入的带宽处理器 (只读视图)
+     */
+    public Collection<PlayerBandwidthHandler> getHandlers() {
+        return Collections.unmodifiableCollection(handlers.values());
+    }
+
+    /**
+     * 获取玩家按数据包类型的出站统计，未注入时返回 null
+     */
+    public PacketStatsHandler getPacketStats(Player player) {
+        PlayerBandwidthHandler handler = handlers.get(player.getUniqueId());
+        return handler != null ? handler.getPacketStats() : null;
+    }
+
+    /**
+     * 将全服按数据包类型的字节数和数据包数复制到调用方提供的数组
+     */
+    public void copyServerPacketStats(long[] bytesOut, long[] packetsOut) {
+        int n = Math.min(PacketTypes.MAX_TYPES, Math.min(bytesOut.length, packetsOut.length));
+        for (int i = 0; i < n; i++) {
+            bytesOut[i] = serverPacketBytes[i].sum();
+            packetsOut[i] = serverPacketCounts[i].sum();
+        }
+    }
+
+    /**
+     * 自适应整形是否启用
+     */
+    public boolean isAdaptiveEnabled() {
+        return adaptiveEnabled;
+    }
+
     /**
      * 获取默认限制
      */
     public long getDefaultLimit() {
-        return defaultLimitKBps;
+        return limits.getDefault();
     }
 
     /**
      * 设置默认限制
      */
     public void setDefaultLimit(long limitKBps) {
-        this.defaultLimitKBps = limitKBps;
+        limits.setDefault(limitKBps);
         plugin.getConfig().set("default-limit-kbps", limitKBps);
         plugin.saveConfig();
     }
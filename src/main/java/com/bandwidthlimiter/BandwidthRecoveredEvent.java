@@ -0,0 +1,26 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+
+/**
+ * 玩家带宽恢复: 饱和后使用率回落到恢复水位以下且队列积压已清空
+ * 收到此事件的插件可以恢复正常发送
+ */
+public class BandwidthRecoveredEvent extends BandwidthEvent {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    public BandwidthRecoveredEvent(Player player, long limit, long rate, long backlog) {
+        super(player, limit, rate, backlog);
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
@@ -0,0 +1,26 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+
+/**
+ * 玩家带宽饱和: 使用率或整形队列积压超过饱和水位
+ * 收到此事件的插件应降低发往该玩家的数据量 (例如暂停小地图同步、减少粒子)
+ */
+public class BandwidthSaturatedEvent extends BandwidthEvent {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    public BandwidthSaturatedEvent(Player player, long limit, long rate, long backlog) {
+        super(player, limit, rate, backlog);
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
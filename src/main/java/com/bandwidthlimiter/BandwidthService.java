@@ -0,0 +1,156 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BandwidthLimiterAPI} 的实现，同时负责检测饱和状态并触发事件
+ *
+ * 查询直接读取 {@link PlayerBandwidthHandler} 的 volatile 字段，不加锁。
+ * 饱和检测在异步定时任务中进行:
+ * - 使用率 >= saturation-watermark 或积压 >= backlog-watermark 时进入饱和，触发 {@link BandwidthSaturatedEvent}
+ * - 使用率 <= recovery-watermark 且积压清空时恢复，触发 {@link BandwidthRecoveredEvent}
+ * 同一玩家两次事件之间至少间隔 event-cooldown-ms，避免在水位附近抖动时刷屏。
+ */
+public class BandwidthService implements BandwidthLimiterAPI {
+
+    private final BandwidthLimiterPlugin plugin;
+    private final BandwidthManager manager;
+    private final Map<UUID, SaturationState> states = new ConcurrentHashMap<>();
+
+    private volatile double saturationWatermark = 0.9;
+    private volatile double recoveryWatermark = 0.6;
+    private volatile long backlogWatermark = 64 * 1024;
+    private volatile long cooldownNanos = TimeUnit.SECONDS.toNanos(2);
+    private TaskScheduler.Task monitorTask;
+
+    public BandwidthService(BandwidthLimiterPlugin plugin, BandwidthManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+    }
+
+    /**
+     * 加载水位配置并 (重新) 启动检测任务
+     */
+    public void loadConfig(FileConfiguration config) {
+        saturationWatermark = config.getDouble("api.saturation-watermark", 0.9);
+        recoveryWatermark = Math.min(saturationWatermark, config.getDouble("api.recovery-watermark", 0.6));
+        backlogWatermark = config.getLong("api.backlog-watermark-kb", 64) * 1024;
+        cooldownNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong("api.event-cooldown-ms", 2000));
+
+        stop();
+        long interval = Math.max(50, config.getLong("api.check-interval-ms", 500));
+        monitorTask = plugin.getTaskScheduler().runAsyncTimer(this::checkSaturation, interval, interval);
+    }
+
+    /**
+     * 停止检测任务
+     */
+    public void stop() {
+        if (monitorTask != null) {
+            monitorTask.cancel();
+            monitorTask = null;
+        }
+    }
+
+    @Override
+    public boolean isShaped(UUID player) {
+        return manager.getHandler(player) != null;
+    }
+
+    @Override
+    public long getLimit(UUID player) {
+        PlayerBandwidthHandler handler = manager.getHandler(player);
+        return handler != null ? handler.getWriteLimit() : -1;
+    }
+
+    @Override
+    public long getConfiguredLimit(UUID player) {
+        PlayerBandwidthHandler handler = manager.getHandler(player);
+        return handler != null ? handler.getConfiguredWriteLimit() : -1;
+    }
+
+    @Override
+    public long getCurrentRate(UUID player) {
+        PlayerBandwidthHandler handler = manager.getHandler(player);
+        return handler != null ? handler.getCurrentWriteRate() : -1;
+    }
+
+    @Override
+    public double getUtilization(UUID player) {
+        PlayerBandwidthHandler handler = manager.getHandler(player);
+        return handler != null ? utilizationOf(handler) : -1;
+    }
+
+    @Override
+    public long getBacklog(UUID player) {
+        PlayerBandwidthHandler handler = manager.getHandler(player);
+        return handler != null ? handler.queueSize() : -1;
+    }
+
+    @Override
+    public boolean isSaturated(UUID player) {
+        SaturationState state = states.get(player);
+        return state != null && state.saturated;
+    }
+
+    private double utilizationOf(PlayerBandwidthHandler handler) {
+        long limit = handler.getWriteLimit();
+        return limit > 0 ? (double) handler.getCurrentWriteRate() / limit : 0;
+    }
+
+    /**
+     * 检查所有玩家的饱和状态，在异步线程中执行
+     */
+    private void checkSaturation() {
+        long now = System.nanoTime();
+
+        for (PlayerBandwidthHandler handler : manager.getHandlers()) {
+            UUID uuid = handler.getPlayerUuid();
+            SaturationState state = states.computeIfAbsent(uuid, u -> new SaturationState());
+
+            double utilization = utilizationOf(handler);
+            long backlog = handler.queueSize();
+            boolean saturated = utilization >= saturationWatermark || backlog >= backlogWatermark;
+            boolean recovered = utilization <= recoveryWatermark && backlog == 0;
+
+            if (state.saturated ? !recovered : !saturated) {
+                continue;
+            }
+            if (now - state.lastEventNanos < cooldownNanos) {
+                continue;
+            }
+
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null) {
+                continue;
+            }
+
+            state.saturated = !state.saturated;
+            state.lastEventNanos = now;
+            long limit = handler.getWriteLimit();
+            long rate = handler.getCurrentWriteRate();
+            if (state.saturated) {
+                plugin.getEventLog().record(EventLog.Type.SATURATED, uuid, player.getName(), rate);
+                Bukkit.getPluginManager().callEvent(new BandwidthSaturatedEvent(player, limit, rate, backlog));
+            } else {
+                plugin.getEventLog().record(EventLog.Type.RECOVERED, uuid, player.getName(), rate);
+                Bukkit.getPluginManager().callEvent(new BandwidthRecoveredEvent(player, limit, rate, backlog));
+            }
+        }
+
+        // 清理已离线玩家的状态
+        states.keySet().removeIf(uuid -> manager.getHandler(uuid) == null);
+    }
+
+    private static class SaturationState {
+        volatile boolean saturated;
+        long lastEventNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+    }
+}
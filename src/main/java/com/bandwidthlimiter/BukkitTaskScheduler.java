@@ -0,0 +1,66 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Paper/Spigot 调度器实现 - 所有同步任务都在主线程执行
+ */
+public class BukkitTaskScheduler implements TaskScheduler {
+
+    private final BandwidthLimiterPlugin plugin;
+    private final BukkitScheduler scheduler;
+
+    public BukkitTaskScheduler(BandwidthLimiterPlugin plugin) {
+        this.plugin = plugin;
+        this.scheduler = Bukkit.getScheduler();
+    }
+
+    @Override
+    public void runForPlayers(Collection<? extends Player> players, Consumer<Player> action) {
+        if (players.isEmpty()) {
+            return;
+        }
+        List<Player> batch = new ArrayList<>(players);
+        scheduler.runTask(plugin, () -> {
+            for (Player player : batch) {
+                if (player.isOnline()) {
+                    action.accept(player);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void runGlobalLater(Runnable task, long delayTicks) {
+        scheduler.runTaskLater(plugin, task, Math.max(0, delayTicks));
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        scheduler.runTaskAsynchronously(plugin, task);
+    }
+
+    @Override
+    public Task runAsyncTimer(Runnable task, long initialDelayMs, long periodMs) {
+        BukkitTask bukkitTask = scheduler.runTaskTimerAsynchronously(plugin, task,
+            msToTicks(initialDelayMs), Math.max(1, msToTicks(periodMs)));
+        return bukkitTask::cancel;
+    }
+
+    @Override
+    public void cancelAll() {
+        scheduler.cancelTasks(plugin);
+    }
+
+    private static long msToTicks(long ms) {
+        return (ms + 49) / 50;
+    }
+}
@@ -0,0 +1,222 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每玩家链路能力档案
+ *
+ * 保存 {@link PlayerBandwidthHandler} 学习到的链路能力，下次登录时作为初始估算，
+ * 慢速链路的玩家从第一个区块开始就按其实际能力发送，而不是按 default-limit-kbps。
+ *
+ * 档案保存在紧凑的二进制文件 profiles.dat 中 (大端):
+ *   int magic | byte version | int count | count × (long uuidMsb | long uuidLsb | int capacityKBps | int epochDay)
+ * 插件启用时异步读入内存，玩家退出和定时保存时更新，超过 max-age-days 未更新的档案被丢弃。
+ */
+public class CapacityProfileStore {
+
+    private static final int MAGIC = 0x42574C50; // "BWLP"
+    private static final byte VERSION = 1;
+    private static final String PROFILE_FILE = "profiles.dat";
+
+    private final BandwidthLimiterPlugin plugin;
+    private final BandwidthManager manager;
+    private final File profileFile;
+    private final Map<UUID, Profile> profiles = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+    private volatile double headroom = 1.25;
+    private volatile long floor = 64 * 1024;
+    private volatile int maxAgeDays = 30;
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+    private boolean loadStarted;
+    private TaskScheduler.Task flushTask;
+
+    public CapacityProfileStore(BandwidthLimiterPlugin plugin, BandwidthManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.profileFile = new File(plugin.getDataFolder(), PROFILE_FILE);
+    }
+
+    /**
+     * 加载配置并 (重新) 启动定时保存，首次调用时异步读取档案文件
+     */
+    public void loadConfig(FileConfiguration config) {
+        stopTasks();
+
+        enabled = config.getBoolean("capacity-profiles.enabled", true);
+        headroom = Math.max(1.0, config.getDouble("capacity-profiles.headroom", 1.25));
+        floor = Math.max(1, config.getLong("capacity-profiles.min-limit-kbps", 64)) * 1024;
+        maxAgeDays = Math.max(1, config.getInt("capacity-profiles.max-age-days", 30));
+
+        if (!enabled) {
+            return;
+        }
+
+        if (!loadStarted) {
+            loadStarted = true;
+            plugin.getTaskScheduler().runAsync(this::load);
+        }
+
+        long flushMs = Math.max(10, config.getLong("capacity-profiles.flush-interval-seconds", 300)) * 1000;
+        flushTask = plugin.getTaskScheduler().runAsyncTimer(this::flush, flushMs, flushMs);
+    }
+
+    /**
+     * 停止定时任务，记录在线玩家的估算并同步保存 (插件禁用时调用，需在移除处理器之前)
+     */
+    public void stop() {
+        stopTasks();
+        if (enabled && loaded) {
+            flush();
+        }
+    }
+
+    private void stopTasks() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+    }
+
+    /**
+     * 为新注入的处理器配置学习参数，并用已保存的档案初始化估算
+     * 档案尚未读取完成时，读取完成后再补上 (需在处理器加入 {@link BandwidthManager#getHandlers()} 之后调用)
+     */
+    public void apply(UUID uuid, PlayerBandwidthHandler handler) {
+        handler.setCapacityLearning(enabled, headroom, floor);
+        if (!enabled || !loaded) {
+            return;
+        }
+        Profile profile = profiles.get(uuid);
+        if (profile != null) {
+            handler.seedLearnedCapacity(profile.capacityKBps * 1024L);
+        }
+    }
+
+    /**
+     * 记录玩家本次会话的估算 (玩家退出时调用)
+     */
+    public void record(UUID uuid, PlayerBandwidthHandler handler) {
+        if (!enabled) {
+            return;
+        }
+        // 样本不足的估算不保存，避免一次偶然的积压拖低下次会话的起步限制
+        long capacity = handler.getConfirmedCapacity();
+        if (capacity > 0) {
+            Profile profile = new Profile((int) Math.min(Integer.MAX_VALUE, capacity / 1024), today());
+            if (!profile.equals(profiles.put(uuid, profile))) {
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * 获取玩家保存的链路能力 (bytes/s)，没有档案时返回 -1
+     */
+    public long getSavedCapacity(UUID uuid) {
+        Profile profile = profiles.get(uuid);
+        return profile != null ? profile.capacityKBps * 1024L : -1;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void load() {
+        int cutoff = today() - maxAgeDays;
+        if (profileFile.exists()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(profileFile)))) {
+                if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                    plugin.getLogger().warning("链路能力档案格式不兼容，已忽略: " + profileFile.getName());
+                } else {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        UUID uuid = new UUID(in.readLong(), in.readLong());
+                        int capacityKBps = in.readInt();
+                        int day = in.readInt();
+                        if (day >= cutoff && capacityKBps > 0) {
+                            // 本次启动后已经记录过的玩家以新值为准
+                            profiles.putIfAbsent(uuid, new Profile(capacityKBps, day));
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                plugin.getLogger().warning("链路能力档案不完整，已读取 " + profiles.size() + " 条");
+            } catch (IOException e) {
+                plugin.getLogger().severe("读取链路能力档案失败: " + e.getMessage());
+            }
+        }
+        loaded = true;
+
+        // 读取完成前已经登录的玩家
+        for (PlayerBandwidthHandler handler : manager.getHandlers()) {
+            Profile profile = profiles.get(handler.getPlayerUuid());
+            if (profile != null) {
+                handler.seedLearnedCapacity(profile.capacityKBps * 1024L);
+            }
+        }
+    }
+
+    /**
+     * 记录在线玩家的当前估算并保存，没有变化时跳过
+     */
+    private synchronized void flush() {
+        for (PlayerBandwidthHandler handler : manager.getHandlers()) {
+            record(handler.getPlayerUuid(), handler);
+        }
+        if (!dirty || !loaded) {
+            return;
+        }
+        dirty = false;
+
+        int cutoff = today() - maxAgeDays;
+        profiles.values().removeIf(profile -> profile.day < cutoff);
+
+        File temp = new File(profileFile.getParentFile(), PROFILE_FILE + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                Map<UUID, Profile> snapshot = Map.copyOf(profiles);
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<UUID, Profile> entry : snapshot.entrySet()) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.writeInt(entry.getValue().capacityKBps);
+                    out.writeInt(entry.getValue().day);
+                }
+            }
+            Files.move(temp.toPath(), profileFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            plugin.getLogger().severe("保存链路能力档案失败: " + e.getMessage());
+        }
+    }
+
+    private static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    private record Profile(int capacityKBps, int day) {
+    }
+}
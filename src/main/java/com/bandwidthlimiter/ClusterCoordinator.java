@@ -0,0 +1,324 @@
+package com.bandwidthlimiter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 集群带宽协调器
+ *
+ * 共用同一上行链路的多个服务器节点通过 UDP 互相广播各自当前的出站速率和需求，
+ * 每个节点按需求比例从共享预算中计算自己的份额:
+ * - 总需求不超过预算时，每个节点得到自己的需求，剩余部分平均分配
+ * - 总需求超过预算时，按需求比例分配
+ *
+ * 节点状态按数据报的来源地址跟踪 (节点重启后更换 nodeId 仍是同一个节点)，
+ * 配置的对等地址超过 peer-timeout 未收到消息时视为失联，为其保留静态份额，
+ * 所有节点都失联时本节点回退到自己的静态份额。
+ *
+ * 数据报格式 (大端):
+ *   int magic | byte version | UTF nodeId | long seq | long egressBps | long demandBps | byte[32] mac
+ * mac 为以共享口令为密钥、对之前所有字节计算的 HMAC-SHA256，口令本身不在网络上传输；
+ * 校验失败或序号回退的数据报会被丢弃。
+ */
+public class ClusterCoordinator {
+
+    private static final int MAGIC = 0x42574C43; // "BWLC"
+    private static final byte VERSION = 2;
+    private static final int MAX_PACKET_SIZE = 512;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+
+    private final Logger logger;
+    private final String nodeId;
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> peers;
+    private final long budgetBps;
+    private final long staticShareBps;
+    private final long peerTimeoutNanos;
+    private final Mac sendMac;    // 仅在 rebalance 中使用
+    private final Mac receiveMac; // 仅在接收线程中使用
+
+    private final Map<SocketAddress, PeerState> peerStates = new ConcurrentHashMap<>();
+    private DatagramSocket socket;
+    private Thread receiver;
+    private long seq;
+    private volatile long lastShare = -1;
+
+    /**
+     * @param nodeId         本节点 ID，集群内唯一
+     * @param bindAddress    本节点监听地址
+     * @param peers          其他节点地址，与本节点监听地址相同的条目会被忽略
+     * @param budgetBps      集群共享预算 (bytes/s)
+     * @param staticShareBps 静态份额 (bytes/s)，0 表示预算 / 节点数
+     * @param peerTimeoutMs  节点失联超时 (ms)
+     * @param secret         共享口令，用作 HMAC 密钥，认证失败的数据报会被丢弃
+     */
+    public ClusterCoordinator(Logger logger, String nodeId, InetSocketAddress bindAddress,
+                              List<InetSocketAddress> peers, long budgetBps, long staticShareBps,
+                              long peerTimeoutMs, String secret) throws GeneralSecurityException {
+        this.logger = logger;
+        this.nodeId = nodeId;
+        this.bindAddress = bindAddress;
+        this.peers = new ArrayList<>(peers);
+        this.peers.remove(bindAddress);
+        this.budgetBps = budgetBps;
+        this.staticShareBps = staticShareBps > 0 ? staticShareBps : budgetBps / (this.peers.size() + 1);
+        this.peerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(peerTimeoutMs);
+
+        // HMAC 不接受空密钥，未设置口令时使用固定密钥 (仅防止误收其他程序的数据报，不防伪造)
+        if (secret == null || secret.isEmpty()) {
+            logger.warning("未设置 cluster.secret，集群数据报可以被同一网络中的任何人伪造");
+            secret = "BandwidthLimiter";
+        }
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        this.sendMac = Mac.getInstance(MAC_ALGORITHM);
+        this.sendMac.init(key);
+        this.receiveMac = Mac.getInstance(MAC_ALGORITHM);
+        this.receiveMac.init(key);
+    }
+
+    /**
+     * 绑定端口并启动接收线程
+     */
+    public void start() throws SocketException {
+        socket = new DatagramSocket(bindAddress);
+        socket.setSoTimeout(1000);
+        receiver = new Thread(this::receiveLoop, "BandwidthLimiter-Cluster");
+        receiver.setDaemon(true);
+        receiver.start();
+        logger.info("集群协调已启动 - 节点 " + nodeId + " 监听 " + bindAddress
+            + "，对等节点 " + peers.size() + " 个，共享预算 " + budgetBps / 1024 + " KB/s");
+    }
+
+    /**
+     * 停止接收线程并关闭端口
+     */
+    public void stop() {
+        if (socket != null) {
+            socket.close();
+        }
+        if (receiver != null) {
+            receiver.interrupt();
+        }
+        peerStates.clear();
+    }
+
+    /**
+     * 广播本节点状态并重新计算份额
+     *
+     * @param egressBps 本节点当前出站速率 (bytes/s)
+     * @param demandBps 本节点当前需求 (bytes/s)
+     * @return 本节点的份额 (bytes/s)
+     */
+    public long rebalance(long egressBps, long demandBps) {
+        broadcast(egressBps, demandBps);
+
+        long now = System.nanoTime();
+        long peerDemand = 0;
+        int livePeers = 0;
+        for (PeerState peer : peerStates.values()) {
+            if (now - peer.lastSeenNanos <= peerTimeoutNanos) {
+                peerDemand += peer.demandBps;
+                livePeers++;
+            }
+        }
+
+        long share;
+        if (livePeers == 0) {
+            share = staticShareBps;
+        } else {
+            // 为失联的配置地址保留静态份额
+            int silentPeers = 0;
+            for (InetSocketAddress peer : peers) {
+                PeerState state = peerStates.get(peer);
+                if (state == null || now - state.lastSeenNanos > peerTimeoutNanos) {
+                    silentPeers++;
+                }
+            }
+            long available = Math.max(0, budgetBps - silentPeers * staticShareBps);
+            long totalDemand = demandBps + peerDemand;
+            if (totalDemand <= 0) {
+                share = available / (livePeers + 1);
+            } else if (totalDemand <= available) {
+                share = demandBps + (available - totalDemand) / (livePeers + 1);
+            } else {
+                share = (long) ((double) available * demandBps / totalDemand);
+            }
+        }
+
+        lastShare = share;
+        return share;
+    }
+
+    /**
+     * 最近一次计算的份额 (bytes/s)，尚未计算时返回 -1
+     */
+    public long getLastShare() {
+        return lastShare;
+    }
+
+    public long getBudget() {
+        return budgetBps;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 已知节点的状态
+     */
+    public Collection<PeerState> getPeerStates() {
+        return Collections.unmodifiableCollection(peerStates.values());
+    }
+
+    /**
+     * 节点是否在线
+     */
+    public boolean isAlive(PeerState peer) {
+        return System.nanoTime() - peer.lastSeenNanos <= peerTimeoutNanos;
+    }
+
+    private void broadcast(long egressBps, long demandBps) {
+        DatagramSocket s = socket;
+        if (s == null || s.isClosed()) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(nodeId);
+            out.writeLong(++seq);
+            out.writeLong(egressBps);
+            out.writeLong(demandBps);
+            sendMac.update(buffer.toByteArray());
+            out.write(sendMac.doFinal());
+            byte[] data = buffer.toByteArray();
+
+            for (InetSocketAddress peer : peers) {
+                s.send(new DatagramPacket(data, data.length, peer));
+            }
+        } catch (IOException e) {
+            // 对端未启动时可能出现 ICMP 不可达，下一轮重试
+        }
+    }
+
+    private void receiveLoop() {
+        byte[] data = new byte[MAX_PACKET_SIZE];
+        DatagramPacket packet = new DatagramPacket(data, data.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setLength(data.length);
+                socket.receive(packet);
+                handlePacket(packet);
+            } catch (SocketTimeoutException e) {
+                // 继续等待
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    logger.warning("集群数据报接收失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handlePacket(DatagramPacket packet) {
+        int length = packet.getLength() - MAC_LENGTH;
+        if (length <= 0) {
+            return;
+        }
+        // 先校验 HMAC，再解析内容
+        receiveMac.update(packet.getData(), packet.getOffset(), length);
+        byte[] expected = receiveMac.doFinal();
+        byte[] actual = new byte[MAC_LENGTH];
+        System.arraycopy(packet.getData(), packet.getOffset() + length, actual, 0, MAC_LENGTH);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(packet.getData(), packet.getOffset(), length));
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return;
+            }
+            String peerId = in.readUTF();
+            if (peerId.equals(nodeId)) {
+                return;
+            }
+            long peerSeq = in.readLong();
+            long egress = in.readLong();
+            long demand = in.readLong();
+
+            PeerState state = peerStates.computeIfAbsent(packet.getSocketAddress(), PeerState::new);
+            // 忽略乱序到达的旧数据报 (对端重启后序号从 1 开始: nodeId 变化或超时后接受)
+            if (peerSeq <= state.seq && peerId.equals(state.nodeId)
+                    && System.nanoTime() - state.lastSeenNanos <= peerTimeoutNanos) {
+                return;
+            }
+            state.nodeId = peerId;
+            state.seq = peerSeq;
+            state.egressBps = egress;
+            state.demandBps = demand;
+            state.lastSeenNanos = System.nanoTime();
+        } catch (IOException e) {
+            // 格式错误的数据报，忽略
+        }
+    }
+
+    /**
+     * 对等节点状态
+     */
+    public static class PeerState {
+        private final SocketAddress address;
+        private volatile String nodeId;
+        private volatile long seq;
+        private volatile long egressBps;
+        private volatile long demandBps;
+        private volatile long lastSeenNanos;
+
+        PeerState(SocketAddress address) {
+            this.address = address;
+        }
+
+        public SocketAddress getAddress() {
+            return address;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public long getEgressBps() {
+            return egressBps;
+        }
+
+        public long getDemandBps() {
+            return demandBps;
+        }
+    }
+}
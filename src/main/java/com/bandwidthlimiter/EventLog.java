@@ -0,0 +1,361 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * 结构化事件日志
+ *
+ * 注入、移除、限制变更、饱和/恢复和错误都作为事件写入有界的无锁环形缓冲区，
+ * 调用方 (EventLoop、主线程、区域线程) 只做一次 CAS，不做任何 I/O。
+ * 后台任务定期取出事件:
+ * - 按类型计数，每个汇总周期向控制台输出一行汇总
+ * - 相同的错误在一个汇总周期内只输出第一次 (带异常堆栈)，之后只计数，在汇总中报告重复次数
+ * - 可选地把每个事件作为一行 JSON 追加到文件
+ * 关闭汇总输出时计数和错误表仍按 WINDOW_MILLIS 周期清空，每个周期跟踪的不同错误数有上限。
+ * 缓冲区写满时丢弃新事件并计数，不会阻塞调用方。
+ */
+public class EventLog {
+
+    /** 环形缓冲区容量，必须是 2 的幂 */
+    private static final int CAPACITY = 8192;
+    /** 关闭汇总输出时清空计数和错误表的周期 */
+    private static final long WINDOW_MILLIS = 60_000;
+    /** 每个周期最多跟踪的不同错误数，超出的只计入总数 */
+    private static final int MAX_DISTINCT_ERRORS = 256;
+
+    public enum Type {
+        INJECT("注入"),
+        BYPASS("绕过"),
+        REMOVE("移除"),
+        LIMIT("限制变更"),
+        SATURATED("饱和"),
+        RECOVERED("恢复"),
+        ERROR("错误");
+
+        private final String displayName;
+
+        Type(String displayName) {
+            this.displayName = displayName;
+        }
+    }
+
+    private record Event(long timeMillis, Type type, UUID player, String name, long value,
+                         String message, Throwable cause) {
+    }
+
+    private final BandwidthLimiterPlugin plugin;
+    private final AtomicReferenceArray<Event> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long head;
+
+    // 以下仅在后台任务中访问 (drain 通过 synchronized 串行化)
+    private final Map<Type, Integer> counts = new EnumMap<>(Type.class);
+    private final Map<String, Integer> errors = new LinkedHashMap<>();
+    private int untrackedErrors;
+    private long lastSummaryMillis = System.currentTimeMillis();
+    private BufferedWriter jsonWriter;
+
+    private volatile long summaryIntervalMillis = 60_000;
+    private volatile int maxErrorsPerSummary = 10;
+    private volatile boolean jsonEnabled;
+    private volatile String jsonFile = "events.jsonl";
+    private TaskScheduler.Task drainTask;
+
+    public EventLog(BandwidthLimiterPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 加载配置并 (重新) 启动后台任务
+     */
+    public void loadConfig(FileConfiguration config) {
+        stopTask();
+        summaryIntervalMillis = Math.max(0, config.getLong("event-log.summary-interval-seconds", 60)) * 1000;
+        maxErrorsPerSummary = Math.max(0, config.getInt("event-log.max-errors-per-summary", 10));
+        jsonEnabled = config.getBoolean("event-log.json.enabled", false);
+        jsonFile = config.getString("event-log.json.file", "events.jsonl");
+
+        synchronized (this) {
+            closeJson();
+        }
+        long interval = Math.max(50, config.getLong("event-log.drain-interval-ms", 500));
+        drainTask = plugin.getTaskScheduler().runAsyncTimer(this::drain, interval, interval);
+    }
+
+    /**
+     * 停止后台任务，取出剩余事件并输出最后一次汇总 (插件禁用时调用)
+     */
+    public void stop() {
+        stopTask();
+        synchronized (this) {
+            drain();
+            if (summaryIntervalMillis > 0) {
+                summarize(System.currentTimeMillis());
+            }
+            closeJson();
+        }
+    }
+
+    private void stopTask() {
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+    }
+
+    /**
+     * 记录事件，可在任意线程调用
+     */
+    public void record(Type type, UUID player, String name, long value) {
+        offer(new Event(System.currentTimeMillis(), type, player, name, value, null, null));
+    }
+
+    /**
+     * 记录错误，相同的 message 会被合并，可在任意线程调用
+     *
+     * @param message 错误描述 (不含玩家名，用于合并重复错误)
+     */
+    public void error(String message, UUID player, String name) {
+        error(message, null, player, name);
+    }
+
+    /**
+     * 记录带异常的错误，message 和异常类型相同的错误会被合并，可在任意线程调用
+     * 每个汇总周期内第一次出现时在后台线程输出完整堆栈
+     *
+     * @param message 错误描述 (不含玩家名和异常信息，用于合并重复错误)
+     * @param cause   异常，可为 null
+     */
+    public void error(String message, Throwable cause, UUID player, String name) {
+        offer(new Event(System.currentTimeMillis(), Type.ERROR, player, name, 0, message, cause));
+    }
+
+    private void offer(Event event) {
+        while (true) {
+            long t = tail.get();
+            if (t - head >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) (t & (CAPACITY - 1)), event);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 取出缓冲区中的所有事件，在后台任务中执行
+     */
+    private synchronized void drain() {
+        long h = head;
+        while (true) {
+            int index = (int) (h & (CAPACITY - 1));
+            Event event = slots.get(index);
+            if (event == null) {
+                // 缓冲区为空，或生产者已占位但尚未写入，下次再取
+                break;
+            }
+            slots.lazySet(index, null);
+            head = ++h;
+            handle(event);
+        }
+
+        if (jsonWriter != null) {
+            try {
+                jsonWriter.flush();
+            } catch (IOException e) {
+                plugin.getLogger().warning("写入事件日志失败，已停止 JSON 输出: " + e.getMessage());
+                jsonEnabled = false;
+                closeJson();
+            }
+        }
+
+        // 关闭汇总输出时也按固定周期清空，错误表不会无限增长，重复错误也能再次输出
+        long now = System.currentTimeMillis();
+        long interval = summaryIntervalMillis;
+        if (now - lastSummaryMillis >= (interval > 0 ? interval : WINDOW_MILLIS)) {
+            if (interval > 0) {
+                summarize(now);
+            } else {
+                resetWindow(now);
+            }
+        }
+    }
+
+    private void handle(Event event) {
+        counts.merge(event.type(), 1, Integer::sum);
+
+        if (event.type() == Type.ERROR) {
+            String key = errorKey(event);
+            Integer seen = errors.get(key);
+            if (seen == null && errors.size() >= MAX_DISTINCT_ERRORS) {
+                untrackedErrors++;
+            } else {
+                errors.put(key, seen == null ? 1 : seen + 1);
+                if (seen == null && errors.size() <= maxErrorsPerSummary) {
+                    // 每个周期每种错误只输出一次堆栈，在后台线程中完成
+                    plugin.getLogger().log(Level.WARNING, key
+                        + (event.name() != null ? " (玩家 " + event.name() + ")" : ""), event.cause());
+                }
+            }
+        }
+
+        if (jsonEnabled) {
+            writeJson(event);
+        }
+    }
+
+    private void summarize(long now) {
+        long droppedCount = dropped.sumThenReset();
+        if (!counts.isEmpty() || droppedCount > 0) {
+            StringBuilder summary = new StringBuilder("过去 ")
+                .append((now - lastSummaryMillis + 500) / 1000).append(" 秒:");
+            for (Map.Entry<Type, Integer> entry : counts.entrySet()) {
+                summary.append(' ').append(entry.getKey().displayName).append(' ').append(entry.getValue());
+            }
+            if (droppedCount > 0) {
+                summary.append("，缓冲区已满丢弃 ").append(droppedCount).append(" 条事件");
+            }
+            plugin.getLogger().info(summary.toString());
+        }
+
+        int shown = 0;
+        int suppressed = 0;
+        for (Map.Entry<String, Integer> entry : errors.entrySet()) {
+            if (shown++ >= maxErrorsPerSummary) {
+                suppressed += entry.getValue();
+            } else if (entry.getValue() > 1) {
+                plugin.getLogger().warning(entry.getKey() + " (重复 " + (entry.getValue() - 1) + " 次)");
+            }
+        }
+        if (suppressed > 0) {
+            plugin.getLogger().warning("另有 " + (errors.size() - maxErrorsPerSummary)
+                + " 种错误共 " + suppressed + " 次未单独输出");
+        }
+        if (untrackedErrors > 0) {
+            plugin.getLogger().warning("不同错误超过 " + MAX_DISTINCT_ERRORS + " 种，另有 "
+                + untrackedErrors + " 次错误未分类");
+        }
+
+        resetWindow(now);
+    }
+
+    private void resetWindow(long now) {
+        counts.clear();
+        errors.clear();
+        untrackedErrors = 0;
+        lastSummaryMillis = now;
+    }
+
+    /**
+     * 合并重复错误的键: 错误描述加异常类型 (不含异常消息，避免每个玩家的错误都不同)
+     */
+    private static String errorKey(Event event) {
+        Throwable cause = event.cause();
+        return cause != null ? event.message() + ": " + cause.getClass().getName() : event.message();
+    }
+
+    private void writeJson(Event event) {
+        try {
+            if (jsonWriter == null) {
+                File file = new File(plugin.getDataFolder(), jsonFile);
+                jsonWriter = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            StringBuilder line = new StringBuilder(128)
+                .append("{\"time\":").append(event.timeMillis())
+                .append(",\"type\":\"").append(event.type().name().toLowerCase(Locale.ROOT)).append('"');
+            if (event.player() != null) {
+                line.append(",\"player\":\"").append(event.player()).append('"');
+            }
+            if (event.name() != null) {
+                line.append(",\"name\":");
+                appendJsonString(line, event.name());
+            }
+            if (event.type() != Type.ERROR) {
+                line.append(",\"value\":").append(event.value());
+            }
+            if (event.message() != null) {
+                line.append(",\"message\":");
+                appendJsonString(line, event.message());
+            }
+            if (event.cause() != null) {
+                StringWriter trace = new StringWriter();
+                event.cause().printStackTrace(new PrintWriter(trace));
+                line.append(",\"exception\":");
+                appendJsonString(line, trace.toString());
+            }
+            line.append('}');
+            jsonWriter.write(line.toString());
+            jsonWriter.newLine();
+        } catch (IOException e) {
+            // 停止写入直到重新加载配置，避免每个事件都报错
+            plugin.getLogger().warning("写入事件日志失败，已停止 JSON 输出: " + e.getMessage());
+            jsonEnabled = false;
+            closeJson();
+        }
+    }
+
+    private void closeJson() {
+        if (jsonWriter != null) {
+            try {
+                jsonWriter.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+            jsonWriter = null;
+        }
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                    break;
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,71 @@
+package com.bandwidthlimiter;
+
+import io.papermc.paper.threadedregions.scheduler.AsyncScheduler;
+import io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Folia 调度器实现
+ *
+ * 全局/异步调度器在构造时获取一次并缓存，之后直接调用 Paper API，
+ * 不再每次调度都反射查找方法。
+ * 仅在 Folia 上实例化，Spigot 上不会加载这些 API。
+ *
+ * 批量玩家任务只走实体调度器，每个玩家一个任务，不按区域合并:
+ * 按区域分组需要读取玩家位置，而实体状态只能由其所在区域读取；
+ * 实体调度器的任务只是追加到实体自己的队列，在所在区域的下一次实体 tick 中执行，
+ * 开销远小于一次区域调度，加入高峰时逐个提交的代价可以接受。
+ */
+public class FoliaTaskScheduler implements TaskScheduler {
+
+    private final BandwidthLimiterPlugin plugin;
+    private final GlobalRegionScheduler globalScheduler;
+    private final AsyncScheduler asyncScheduler;
+
+    public FoliaTaskScheduler(BandwidthLimiterPlugin plugin) {
+        this.plugin = plugin;
+        this.globalScheduler = Bukkit.getGlobalRegionScheduler();
+        this.asyncScheduler = Bukkit.getAsyncScheduler();
+    }
+
+    @Override
+    public void runForPlayers(Collection<? extends Player> players, Consumer<Player> action) {
+        // 玩家的位置只能由其所在区域读取，由实体调度器把任务路由到玩家当前所在的区域
+        for (Player player : players) {
+            player.getScheduler().run(plugin, scheduledTask -> action.accept(player), null);
+        }
+    }
+
+    @Override
+    public void runGlobalLater(Runnable task, long delayTicks) {
+        if (delayTicks <= 0) {
+            globalScheduler.execute(plugin, task);
+        } else {
+            globalScheduler.runDelayed(plugin, scheduledTask -> task.run(), delayTicks);
+        }
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        asyncScheduler.runNow(plugin, scheduledTask -> task.run());
+    }
+
+    @Override
+    public Task runAsyncTimer(Runnable task, long initialDelayMs, long periodMs) {
+        ScheduledTask scheduledTask = asyncScheduler.runAtFixedRate(plugin, t -> task.run(),
+            Math.max(0, initialDelayMs), Math.max(1, periodMs), TimeUnit.MILLISECONDS);
+        return scheduledTask::cancel;
+    }
+
+    @Override
+    public void cancelAll() {
+        globalScheduler.cancelTasks(plugin);
+        asyncScheduler.cancelTasks(plugin);
+    }
+}
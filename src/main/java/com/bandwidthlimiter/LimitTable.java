@@ -0,0 +1,63 @@
+package com.bandwidthlimiter;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带宽限制表 - 全局默认限制 + 每玩家独立限制 (KB/s)
+ *
+ * 不依赖 Bukkit API，服务端插件和代理端插件共用同一套限制解析逻辑。
+ */
+public class LimitTable {
+
+    private final Map<UUID, Long> playerLimits = new ConcurrentHashMap<>();
+    private volatile long defaultLimitKBps;
+
+    public LimitTable(long defaultLimitKBps) {
+        this.defaultLimitKBps = defaultLimitKBps;
+    }
+
+    /**
+     * 获取玩家的带宽限制 (KB/s)，没有独立限制时返回默认值
+     */
+    public long get(UUID uuid) {
+        return playerLimits.getOrDefault(uuid, defaultLimitKBps);
+    }
+
+    /**
+     * 玩家是否有独立限制
+     */
+    public boolean hasOverride(UUID uuid) {
+        return playerLimits.containsKey(uuid);
+    }
+
+    /**
+     * 设置玩家的独立限制 (KB/s)
+     */
+    public void set(UUID uuid, long limitKBps) {
+        playerLimits.put(uuid, limitKBps);
+    }
+
+    /**
+     * 移除玩家的独立限制
+     */
+    public void remove(UUID uuid) {
+        playerLimits.remove(uuid);
+    }
+
+    /**
+     * 清空所有独立限制
+     */
+    public void clear() {
+        playerLimits.clear();
+    }
+
+    public long getDefault() {
+        return defaultLimitKBps;
+    }
+
+    public void setDefault(long limitKBps) {
+        this.defaultLimitKBps = limitKBps;
+    }
+}
@@ -0,0 +1,77 @@
+package com.bandwidthlimiter;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 积压丢包处理器
+ *
+ * 位于 {@link PacketStatsHandler} 之前 (出站方向)，看到的是尚未编码的数据包对象。
+ * 玩家的整形队列积压超过水位时，按 {@link LoadSheddingPolicy} 直接丢弃
+ * 非必要的数据包，不再让它们排队拖慢后面的数据。
+ *
+ * 被丢弃的数据包没有经过编码，丢弃字节数按该类型已发送数据包的平均大小估算。
+ */
+public class LoadSheddingHandler extends ChannelOutboundHandlerAdapter {
+
+    private final PlayerBandwidthHandler bandwidthHandler;
+    private volatile LoadSheddingPolicy policy;
+
+    private volatile long droppedPackets;
+    private volatile long droppedBytes;
+
+    public LoadSheddingHandler(PlayerBandwidthHandler bandwidthHandler, LoadSheddingPolicy policy) {
+        this.bandwidthHandler = bandwidthHandler;
+        this.policy = policy;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        LoadSheddingPolicy current = policy;
+        if (current.isEnabled()) {
+            int type = PacketTypes.idOf(msg);
+            if (current.shouldDrop(type, bandwidthHandler.queueSize())) {
+                drop(type, msg, promise);
+                return;
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    private void drop(int type, Object msg, ChannelPromise promise) {
+        // 只在 EventLoop 中写入，volatile 仅用于跨线程读取
+        droppedPackets++;
+        PacketStatsHandler stats = bandwidthHandler.getPacketStats();
+        if (stats != null) {
+            long sent = stats.getPackets(type);
+            if (sent > 0) {
+                droppedBytes += stats.getBytes(type) / sent;
+            }
+        }
+        ReferenceCountUtil.release(msg);
+        promise.trySuccess();
+    }
+
+    /**
+     * 更新丢包策略 (配置重载时调用)
+     */
+    public void setPolicy(LoadSheddingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * 累计丢弃的数据包数
+     */
+    public long getDroppedPackets() {
+        return droppedPackets;
+    }
+
+    /**
+     * 累计丢弃的字节数 (估算)
+     */
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+}
@@ -0,0 +1,126 @@
+package com.bandwidthlimiter;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 积压丢包策略
+ *
+ * 玩家整形队列积压超过低水位时，丢弃 soft 列表中的数据包 (粒子、声音等)；
+ * 超过高水位时，额外丢弃 hard 列表中的数据包 (手臂挥动、受伤动画等纯表现类包)。
+ *
+ * 列表按数据包名配置 (与 /bwl breakdown 显示的名称一致)，
+ * 写路径上按 {@link PacketTypes} 的类型 ID 查表，首次遇到某类型时才解析名称。
+ */
+public final class LoadSheddingPolicy {
+
+    /** 不丢弃 */
+    public static final byte KEEP = 1;
+    /** 超过低水位时丢弃 */
+    public static final byte SOFT = 2;
+    /** 超过高水位时丢弃 */
+    public static final byte HARD = 3;
+
+    private final boolean enabled;
+    private final long softWatermark;
+    private final long hardWatermark;
+    private final Set<String> softTypes;
+    private final Set<String> hardTypes;
+    private final byte[] levels = new byte[PacketTypes.MAX_TYPES]; // 0 = 尚未解析
+
+    /**
+     * @param enabled       是否启用
+     * @param softWatermark 低水位 (bytes)
+     * @param hardWatermark 高水位 (bytes)
+     * @param softTypes     超过低水位时可丢弃的数据包名
+     * @param hardTypes     超过高水位时额外可丢弃的数据包名
+     */
+    public LoadSheddingPolicy(boolean enabled, long softWatermark, long hardWatermark,
+                              Collection<String> softTypes, Collection<String> hardTypes) {
+        this.enabled = enabled;
+        this.softWatermark = softWatermark;
+        this.hardWatermark = Math.max(softWatermark, hardWatermark);
+        this.softTypes = normalize(softTypes);
+        this.hardTypes = normalize(hardTypes);
+    }
+
+    /**
+     * 不丢弃任何数据包的策略
+     */
+    public static LoadSheddingPolicy disabled() {
+        return new LoadSheddingPolicy(false, Long.MAX_VALUE, Long.MAX_VALUE, Set.of(), Set.of());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getSoftWatermark() {
+        return softWatermark;
+    }
+
+    public long getHardWatermark() {
+        return hardWatermark;
+    }
+
+    /**
+     * 判断在给定积压下是否应丢弃该类型的数据包
+     *
+     * @param type    数据包类型 ID
+     * @param backlog 当前积压 (bytes)
+     */
+    public boolean shouldDrop(int type, long backlog) {
+        if (!enabled || backlog < softWatermark) {
+            return false;
+        }
+        byte level = levels[type];
+        if (level == 0) {
+            level = resolve(type);
+            if (level == 0) {
+                // 名称尚未对本线程可见，这次不丢弃，也不缓存
+                return false;
+            }
+            // 多个 EventLoop 共享该表，并发写入的都是同一个确定的结果，无需同步
+            levels[type] = level;
+        }
+        return level == SOFT || (level == HARD && backlog >= hardWatermark);
+    }
+
+    /**
+     * 按名称解析类型的丢弃级别，名称尚不可用时返回 0
+     */
+    private byte resolve(int type) {
+        if (type == PacketTypes.OTHER) {
+            return KEEP;
+        }
+        String name = PacketTypes.nameOf(type);
+        if (name == null) {
+            return 0;
+        }
+        name = name.toLowerCase(Locale.ROOT);
+        if (softTypes.contains(name)) {
+            return SOFT;
+        }
+        if (hardTypes.contains(name)) {
+            return HARD;
+        }
+        return KEEP;
+    }
+
+    private static Set<String> normalize(Collection<String> names) {
+        Set<String> result = new HashSet<>();
+        for (String name : names) {
+            String n = name.trim();
+            if (n.startsWith("Clientbound")) {
+                n = n.substring("Clientbound".length());
+            }
+            if (n.endsWith("Packet") && n.length() > "Packet".length()) {
+                n = n.substring(0, n.length() - "Packet".length());
+            }
+            result.add(n.toLowerCase(Locale.ROOT));
+        }
+        return result;
+    }
+}
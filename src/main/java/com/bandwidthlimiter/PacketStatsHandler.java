@@ -0,0 +1,85 @@
+package com.bandwidthlimiter;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按数据包类型统计出站流量
+ *
+ * 位于 encoder 之前 (出站方向)，看到的是尚未编码的数据包对象。
+ * 每次写出时记录 {@link PlayerBandwidthHandler} 的累计字节数差值，
+ * 得到该数据包经过编码、压缩、加密后的实际字节数。
+ *
+ * 统计数据写入预分配的 long 数组 (以 {@link PacketTypes} 分配的类型 ID 为下标)，
+ * 写路径上没有 Map 查找和装箱。每玩家数组只在 EventLoop 中写入，
+ * 全服统计由所有 EventLoop 共享，使用 LongAdder 分散竞争，避免每个数据包都在同一缓存行上 CAS。
+ */
+public class PacketStatsHandler extends ChannelOutboundHandlerAdapter {
+
+    private final PlayerBandwidthHandler bandwidthHandler;
+    private final LongAdder[] serverBytes;
+    private final LongAdder[] serverPackets;
+    private final long[] bytes = new long[PacketTypes.MAX_TYPES];
+    private final long[] packets = new long[PacketTypes.MAX_TYPES];
+
+    /**
+     * @param bandwidthHandler 同一 Channel 上的带宽处理器，用于读取实际写出的字节数
+     * @param serverBytes      全服按类型的字节数统计
+     * @param serverPackets    全服按类型的数据包数统计
+     */
+    public PacketStatsHandler(PlayerBandwidthHandler bandwidthHandler,
+                              LongAdder[] serverBytes, LongAdder[] serverPackets) {
+        this.bandwidthHandler = bandwidthHandler;
+        this.serverBytes = serverBytes;
+        this.serverPackets = serverPackets;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        int type = PacketTypes.idOf(msg);
+        long before = bandwidthHandler.getTotalWritten();
+        ctx.write(msg, promise);
+        long size = bandwidthHandler.getTotalWritten() - before;
+
+        bytes[type] += size;
+        packets[type]++;
+        serverBytes[type].add(size);
+        serverPackets[type].increment();
+    }
+
+    /**
+     * 创建全服按类型的计数器数组，下标为 {@link PacketTypes} 分配的类型 ID
+     */
+    public static LongAdder[] newServerCounters() {
+        LongAdder[] counters = new LongAdder[PacketTypes.MAX_TYPES];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    /**
+     * 获取某类型的累计出站字节数
+     */
+    public long getBytes(int type) {
+        return bytes[type];
+    }
+
+    /**
+     * 获取某类型的累计出站数据包数
+     */
+    public long getPackets(int type) {
+        return packets[type];
+    }
+
+    /**
+     * 将各类型的字节数和数据包数复制到调用方提供的数组
+     */
+    public void copyTo(long[] bytesOut, long[] packetsOut) {
+        System.arraycopy(bytes, 0, bytesOut, 0, Math.min(bytes.length, bytesOut.length));
+        System.arraycopy(packets, 0, packetsOut, 0, Math.min(packets.length, packetsOut.length));
+    }
+}
@@ -0,0 +1,91 @@
+package com.bandwidthlimiter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 数据包类型注册表
+ *
+ * 为每个出站数据包类分配一个稠密的类型 ID (0 ~ MAX_TYPES-1)，
+ * 统计数组直接以该 ID 为下标。ID 在首次遇到该类时通过 ConcurrentHashMap 原子地分配，
+ * 多个 EventLoop 同时遇到同一个新类也只占用一个 ID；
+ * 之后的查找通过 ClassValue 缓存完成，不分配对象也不装箱。
+ *
+ * Paper 1.20.5+ 运行时使用 Mojang 映射，类名即为数据包名，
+ * 例如 ClientboundLevelChunkWithLightPacket → LevelChunkWithLight。
+ */
+public final class PacketTypes {
+
+    /** 最多跟踪的数据包类型数，超出的类型归入 OTHER */
+    public static final int MAX_TYPES = 256;
+    /** 类型数用尽时使用的兜底类型 */
+    public static final int OTHER = 0;
+
+    private static final AtomicReferenceArray<String> NAMES = new AtomicReferenceArray<>(MAX_TYPES);
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+    private static final Map<Class<?>, Integer> ASSIGNED = new ConcurrentHashMap<>();
+
+    private static final ClassValue<Integer> IDS = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            // computeValue 可能被并发调用多次，ID 只在 computeIfAbsent 中分配一次
+            return ASSIGNED.computeIfAbsent(type, PacketTypes::assign);
+        }
+    };
+
+    static {
+        NAMES.set(OTHER, "Other");
+    }
+
+    private PacketTypes() {}
+
+    /**
+     * 获取消息对应的类型 ID
+     */
+    public static int idOf(Object msg) {
+        return IDS.get(msg.getClass());
+    }
+
+    /**
+     * 获取类型 ID 对应的显示名称，未分配时返回 null
+     */
+    public static String nameOf(int id) {
+        return id >= 0 && id < MAX_TYPES ? NAMES.get(id) : null;
+    }
+
+    /**
+     * 已分配的类型数 (包含 OTHER)，可用作遍历上界
+     */
+    public static int count() {
+        return Math.min(NEXT_ID.get(), MAX_TYPES);
+    }
+
+    private static Integer assign(Class<?> type) {
+        if (NEXT_ID.get() >= MAX_TYPES) {
+            return OTHER;
+        }
+        int id = NEXT_ID.getAndIncrement();
+        if (id >= MAX_TYPES) {
+            return OTHER;
+        }
+        // 先写名称再发布 ID，拿到 ID 的线程一定能读到名称
+        NAMES.set(id, displayName(type));
+        return id;
+    }
+
+    private static String displayName(Class<?> type) {
+        String name = type.getSimpleName();
+        if (name.isEmpty()) {
+            name = type.getName();
+        }
+        if (name.startsWith("Clientbound")) {
+            name = name.substring("Clientbound".length());
+        }
+        if (name.endsWith("Packet") && name.length() > "Packet".length()) {
+            name = name.substring(0, name.length() - "Packet".length());
+        }
+        return name;
+    }
+}
@@ -1,93 +1,753 @@
 package com.bandwidthlimiter;
 
-import io.netty.handler.traffic.ChannelTrafficShapingHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 玩家带宽处理器 - 基于 Netty 的 ChannelTrafficShapingHandler
+ * 玩家带宽处理器
  *
- * 工作原理:
- * ChannelTrafficShapingHandler 是 Netty 内置的流量整形处理器。
- * 它通过延迟写操作来限制出站带宽，通过延迟读操作来限制入站带宽。
- *
- * 当出站速率超过设定的 writeLimit 时，后续的写操作会被排队等待，
- * 直到当前时间窗口内的发送量低于限制值。
+ * 两级结构:
+ * 直通模式下只统计写出的字节数和速率，不排队、不延迟，也没有定时器。
+ * 速率超过生效限制的 escalate-ratio 时，在 EventLoop 中把完整整形阶段
+ * ({@link PlayerTrafficShaper}，基于 Netty 的 ChannelTrafficShapingHandler) 插入到本处理器前面；
+ * 速率低于 deescalate-ratio、整形队列清空并持续 cooldown 后再移除，回到直通模式。
+ * 大多数玩家只使用限制的一小部分，因此大部分时间都处于直通模式。
  *
+ * 整形阶段通过延迟写操作来限制出站带宽: 当出站速率超过 writeLimit 时，
+ * 后续的写操作会被排队等待，直到当前时间窗口内的发送量低于限制值。
  * 这是在 Netty 层面的真实字节级带宽控制，比基于数据包计数的限制更精确。
+ *
+ * 自适应整形:
+ * 在 epoll 传输下，每个统计周期读取一次内核 TCP_INFO，
+ * 在有出站积压 (或 cwnd 已占满) 的周期按 cwnd * mss / rtt 估算路径承载能力，
+ * 空闲或应用层发送不足的周期内核会收缩 cwnd，这些周期的样本被忽略；
+ * 连续多个周期没有积压时放开自适应限制，避免偏低的估算在整个会话中无法回升。实际生效的出站限制为
+ * min(配置限制, 估算能力 * 余量系数)，且不低于设定的下限。
+ * NIO 传输下始终使用配置限制。
+ *
+ * 突发额度:
+ * 加入、切换世界、远距离传送后，出站限制临时提高 (grantBurst)，
+ * 保持一段时间后线性衰减回配置值，加快初始区块加载。
+ *
+ * 速率统计:
+ * 出站速率由 {@link RateEstimator} 统计 (瞬时 / 1s / 10s / 60s 指数加权平均)，
+ * 统计的是实际送往 socket 的字节数: 累计写入量减去整形队列中仍在等待的字节数，
+ * 因此整形模式下报告的速率不会超过限制。累计写入量 (getTotalWritten) 则包含排队中的数据。
+ * 两种模式下都由本处理器统计，切换模式不影响速率和累计值。
+ *
+ * 集群预算:
+ * 启用集群协调时，本节点分到的共享预算按需求分配给各玩家 (setBudgetCap)，
+ * 同样作为出站限制的上限。
+ *
+ * 流量配额:
+ * 玩家超出每日或每月流量配额后，出站限制不超过配额限速值 (setQuotaCap)。
+ *
+ * 链路能力学习:
+ * Netty 出站缓冲区中已 flush 的数据连续多个周期写不进 socket，说明瓶颈在玩家的链路上，
+ * 此时的实际发送速率作为链路能力的样本 (已 write 未 flush 的写入批次不算积压)；
+ * 没有积压时实际速率只是下限，超过估算值就直接上调。
+ * 估算值乘以余量系数作为出站限制的上限，至少有 LEARN_MIN_SAMPLES 个链路瓶颈样本后
+ * 才在会话之间持久化 ({@link CapacityProfileStore})，下次登录时以 min(配置限制, 学习能力) 起步。
+ *
+ * 统计周期: 整形模式下由整形阶段的 TrafficCounter 回调，
+ * 直通模式下在写路径上按相同间隔触发 (没有写操作时无需处理)。
  */
-public class PlayerBandwidthHandler extends ChannelTrafficShapingHandler {
+public class PlayerBandwidthHandler extends ChannelOutboundHandlerAdapter {
+
+    /** 整形阶段在 Pipeline 中的名称 */
+    public static final String SHAPER_NAME = "bandwidth_limiter_shaper";
+
+    /** 出现重传时对路径能力估算的削减系数 */
+    private static final double RETRANS_BACKOFF = 0.7;
+    /** 路径能力估算的平滑系数 */
+    private static final double CAPACITY_SMOOTHING = 0.25;
+    /** 连续多少个统计周期没有积压后放开自适应限制，重新探测路径能力 */
+    private static final int ADAPTIVE_RELEASE_TICKS = 5;
+    /** 生效限制变化小于该比例时不重新配置，避免频繁重置统计 */
+    private static final double APPLY_THRESHOLD = 0.05;
+    /** 已 flush 未写出的积压超过该字节数且超过 LINK_BACKLOG_SECONDS 的发送量时视为链路瓶颈 */
+    private static final long LINK_BACKLOG_MIN = 16 * 1024;
+    private static final double LINK_BACKLOG_SECONDS = 0.25;
+    /** 连续多少个统计周期处于链路瓶颈才采用样本 */
+    private static final int LINK_BOUND_TICKS = 3;
+    /** 至少多少个链路瓶颈样本后才持久化估算值 */
+    private static final int LEARN_MIN_SAMPLES = 3;
+    /** 链路能力学习的平滑系数 */
+    private static final double LEARN_SMOOTHING = 0.2;
 
     private final UUID playerUuid;
+    private final long checkInterval;
+    private final long checkIntervalNanos;
+    private final RateEstimator writeRate = new RateEstimator();
+    private final AtomicLong totalWritten = new AtomicLong(); // 仅在 EventLoop 中写入
+    private final AtomicBoolean applyPending = new AtomicBoolean();
+    private final Runnable applyTask = () -> {
+        // 先清除标记再读取配置，执行期间的新修改会再提交一次
+        applyPending.set(false);
+        applyWriteLimit(true);
+    };
+
+    private volatile long configuredWriteLimit;
+    private volatile long readLimit;
+    private volatile long effectiveWriteLimit;
+    private volatile boolean adaptiveEnabled;
+    private volatile long adaptiveFloor;
+    private volatile double adaptiveHeadroom = 1.0;
+    private volatile long adaptiveCap = -1;
+    private volatile long budgetCap = -1;
+    private volatile long quotaCap = -1;
+    private volatile boolean capsDirty;
+
+    // 链路能力学习，learnedCapacity 仅在 EventLoop 中写入
+    private volatile boolean learningEnabled;
+    private volatile double learnedHeadroom = 1.25;
+    private volatile long learnedFloor;
+    private volatile long learnedCapacity = -1;
+    private volatile long seededCapacity = -1;
+    private volatile int learnedSamples;
+    private int linkBoundTicks; // 仅在 EventLoop 中访问
+
+    // 直通模式
+    private volatile boolean passThroughEnabled = true;
+    private volatile double escalateRatio = 0.7;
+    private volatile double deescalateRatio = 0.5;
+    private volatile long cooldownNanos = TimeUnit.SECONDS.toNanos(10);
+    private volatile long escalateThreshold;
+    private volatile PlayerTrafficShaper shaper;
+    private long lastTickNanos;  // 仅在 EventLoop 中访问
+    private long lastBusyNanos;  // 仅在 EventLoop 中访问
+    private long sentRecorded;   // 已计入速率统计的发送量，仅在 EventLoop 中访问
+
+    private volatile TcpInfoSampler tcpInfo;
+    private volatile PacketStatsHandler packetStats;
+    private volatile LoadSheddingHandler loadShedding;
+    private volatile ChannelHandlerContext ctx;
+    private double capacityEstimate = -1; // 仅在 EventLoop 中访问
+    private int idleSampleTicks;          // 仅在 EventLoop 中访问
+
+    // 突发额度，除 currentBurstExtra 外仅在 EventLoop 中访问
+    private long burstExtra;
+    private long burstHoldUntil;
+    private long burstDecayNanos;
+    private AtomicLong burstBudget;
+    private volatile long currentBurstExtra;
 
     /**
      * @param playerUuid    玩家 UUID
-     * @param readLimit     入站限制 (bytes/s), 0 = 不限制
+     * @param readLimit     入站限制 (bytes/s), 0 = 不限制，仅在整形模式下生效
      * @param writeLimit    出站限制 (bytes/s), 0 = 不限制
      * @param checkInterval 检查间隔 (ms)
      */
     public PlayerBandwidthHandler(UUID playerUuid, long readLimit, long writeLimit, long checkInterval) {
-        super(writeLimit, readLimit, checkInterval);
         this.playerUuid = playerUuid;
+        this.readLimit = readLimit;
+        this.configuredWriteLimit = writeLimit;
+        this.checkInterval = checkInterval;
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkInterval);
+        applyWriteLimit(true);
     }
 
     public UUID getPlayerUuid() {
         return playerUuid;
     }
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        tcpInfo = TcpInfoSampler.create(ctx.channel());
+        lastTickNanos = System.nanoTime();
+        if (!passThroughEnabled) {
+            escalate(lastTickNanos);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releaseBurst();
+        deescalate();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        long size = calculateSize(msg);
+        if (size > 0) {
+            totalWritten.lazySet(totalWritten.get() + size);
+        }
+        if (shaper == null) {
+            // 直通模式下写入即发送，约每 250ms 检查一次，必要时在写出之前切换到整形模式
+            long now = System.nanoTime();
+            if (size > 0 && recordSent(now)) {
+                onPassThroughFold(now);
+            }
+            ctx.write(msg, promise);
+        } else {
+            // 整形模式下先交给整形阶段，再按其队列计算实际发送量；统计周期由整形阶段回调
+            ctx.write(msg, promise);
+            if (size > 0) {
+                recordSent(System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * 把新送往 socket 的字节数计入速率统计，在 EventLoop 中调用
+     * 整形阶段被移除时会把队列中剩余的数据直接写出，下次调用时一并计入
+     *
+     * @return 速率估算器是否完成了一次折算
+     */
+    private boolean recordSent(long now) {
+        long sent = totalWritten.get() - queueSize();
+        long delta = sent - sentRecorded;
+        if (delta <= 0) {
+            return false;
+        }
+        sentRecorded = sent;
+        return writeRate.record(delta, now);
+    }
+
+    /**
+     * 直通模式下的周期检查: 按统计间隔处理周期任务，速率超过阈值时切换到整形模式
+     * 在写出当前数据之前切换，因此这次写操作已经经过整形阶段
+     */
+    private void onPassThroughFold(long now) {
+        if (now - lastTickNanos >= checkIntervalNanos) {
+            onTick(now);
+        }
+        long threshold = escalateThreshold;
+        if (threshold > 0 && writeRate.getInstantRate() >= threshold) {
+            escalate(now);
+        }
+    }
+
+    /**
+     * 切换到整形模式，在 EventLoop 中调用
+     */
+    private void escalate(long now) {
+        ChannelHandlerContext context = ctx;
+        if (shaper != null || context == null || context.isRemoved()) {
+            return;
+        }
+        PlayerTrafficShaper stage = new PlayerTrafficShaper(this, effectiveWriteLimit, readLimit, checkInterval);
+        context.pipeline().addBefore(context.name(), SHAPER_NAME, stage);
+        shaper = stage;
+        lastBusyNanos = now;
+    }
+
+    /**
+     * 回到直通模式，在 EventLoop 中调用
+     */
+    private void deescalate() {
+        PlayerTrafficShaper stage = shaper;
+        if (stage == null) {
+            return;
+        }
+        shaper = null;
+        // 连接已关闭时由 Pipeline 自行清理
+        ChannelHandlerContext context = ctx;
+        if (context != null && context.channel().isActive() && context.pipeline().context(stage) != null) {
+            context.pipeline().remove(stage);
+        }
+    }
+
+    /**
+     * 统计周期回调，在 EventLoop 中执行
+     */
+    void onTick(long now) {
+        lastTickNanos = now;
+        recordSent(now);
+        writeRate.tick(now);
+
+        boolean adaptiveChanged = updateAdaptiveCap();
+        boolean learnedChanged = updateLearnedCapacity();
+        boolean bursting = burstExtra > 0;
+        boolean burstEnded = bursting && updateBurst(now);
+        boolean capsChanged = capsDirty;
+        capsDirty = false;
+
+        if (adaptiveChanged || learnedChanged || bursting || capsChanged) {
+            applyWriteLimit(burstEnded);
+        }
+
+        PlayerTrafficShaper stage = shaper;
+        if (stage != null && passThroughEnabled) {
+            long limit = effectiveWriteLimit;
+            boolean busy = stage.queueSize() > 0
+                || (limit > 0 && writeRate.getRate1s() >= limit * deescalateRatio);
+            if (busy) {
+                lastBusyNanos = now;
+            } else if (now - lastBusyNanos >= cooldownNanos) {
+                // 不在整形阶段自身的回调中移除它
+                ctx.executor().execute(this::deescalate);
+            }
+        }
+    }
+
+    /**
+     * 读取 TCP_INFO 并更新路径能力估算
+     *
+     * @return 自适应限制是否有更新
+     */
+    private boolean updateAdaptiveCap() {
+        TcpInfoSampler sampler = tcpInfo;
+        if (sampler == null) {
+            return false;
+        }
+
+        TcpInfoSampler.Snapshot snapshot = sampler.sample();
+        if (snapshot == null || !adaptiveEnabled) {
+            return false;
+        }
+        // 没有积压时 cwnd 反映的是应用层的发送量而不是路径能力，不作为样本。
+        // 但自适应限制本身也会让发送方受应用层限制: 一次偏低的估算 (例如重传削减) 之后
+        // 可能再也看不到积压，因此连续多个周期没有积压时放开限制，由之后的积压样本重新估算
+        if (!snapshot.backlogged()) {
+            if (++idleSampleTicks >= ADAPTIVE_RELEASE_TICKS && adaptiveCap > 0) {
+                adaptiveCap = -1;
+                capacityEstimate = -1;
+                return true;
+            }
+            return false;
+        }
+        idleSampleTicks = 0;
+
+        long pathCapacity = snapshot.estimatedCapacity();
+        if (pathCapacity <= 0) {
+            return false;
+        }
+
+        double sample = pathCapacity;
+        if (snapshot.retransDelta() > 0) {
+            sample *= RETRANS_BACKOFF;
+        }
+        capacityEstimate = capacityEstimate < 0
+            ? sample
+            : capacityEstimate + CAPACITY_SMOOTHING * (sample - capacityEstimate);
+
+        adaptiveCap = Math.max(adaptiveFloor, (long) (capacityEstimate * adaptiveHeadroom));
+        return true;
+    }
+
+    /**
+     * 根据出站缓冲区积压和实际发送速率更新链路能力估算
+     *
+     * @return 估算值是否有更新
+     */
+    private boolean updateLearnedCapacity() {
+        ChannelHandlerContext context = ctx;
+        if (!learningEnabled || context == null) {
+            return false;
+        }
+
+        // 实际送往 socket 的速率 (不含整形队列中等待的数据)
+        long achieved = writeRate.getRate1s();
+        if (achieved <= 0) {
+            linkBoundTicks = 0;
+            return false;
+        }
+
+        // 只看已 flush 的积压: 直通模式下本方法在写入批次中途被调用，未 flush 的数据不代表链路瓶颈
+        long backlog = TcpInfoSampler.flushedPendingBytes(context.channel());
+        boolean linkBound = backlog >= LINK_BACKLOG_MIN && backlog >= achieved * LINK_BACKLOG_SECONDS;
+        linkBoundTicks = linkBound ? linkBoundTicks + 1 : 0;
+
+        long estimate = learnedCapacity;
+        long updated;
+        if (linkBoundTicks >= LINK_BOUND_TICKS) {
+            updated = estimate < 0 ? achieved : (long) (estimate + LEARN_SMOOTHING * (achieved - estimate));
+            learnedSamples++;
+        } else if (estimate >= 0 && achieved > estimate) {
+            updated = achieved;
+        } else {
+            return false;
+        }
+
+        learnedCapacity = Math.max(learnedFloor, updated);
+        return true;
+    }
+
+    /**
+     * 按时间衰减突发额度
+     *
+     * @return 突发是否已结束
+     */
+    private boolean updateBurst(long now) {
+        long extra;
+        if (now - burstHoldUntil < 0) {
+            extra = burstExtra;
+        } else if (burstDecayNanos > 0 && now - burstHoldUntil < burstDecayNanos) {
+            double remaining = 1.0 - (double) (now - burstHoldUntil) / burstDecayNanos;
+            extra = (long) (burstExtra * remaining);
+        } else {
+            extra = 0;
+        }
+
+        currentBurstExtra = extra;
+        if (extra == 0) {
+            releaseBurst();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 授予突发额度: 在 hold 时间内出站限制提高 extra，之后在 decay 时间内线性衰减回配置值
+     * 可在任意线程调用，实际修改在 EventLoop 中进行
+     *
+     * @param extra       额外出站限制 (bytes/s)
+     * @param holdNanos   保持时间 (ns)
+     * @param decayNanos  衰减时间 (ns)
+     * @param budgetInUse 全服突发预算的已用量，结束时归还 extra，null 表示不受预算限制
+     */
+    public void grantBurst(long extra, long holdNanos, long decayNanos, AtomicLong budgetInUse) {
+        ChannelHandlerContext context = ctx;
+        if (context != null && !context.executor().inEventLoop()) {
+            context.executor().execute(() -> grantBurst(extra, holdNanos, decayNanos, budgetInUse));
+            return;
+        }
+        if (context != null && context.isRemoved()) {
+            // 玩家已断开，直接归还预算
+            if (budgetInUse != null) {
+                budgetInUse.addAndGet(-extra);
+            }
+            return;
+        }
+
+        releaseBurst();
+        burstExtra = extra;
+        currentBurstExtra = extra;
+        burstHoldUntil = System.nanoTime() + holdNanos;
+        burstDecayNanos = decayNanos;
+        burstBudget = budgetInUse;
+        applyWriteLimit(true);
+    }
+
+    /**
+     * 设置集群预算分配给该玩家的上限 (bytes/s)，-1 表示不限制
+     * 在下一个统计周期生效，避免频繁重置 TrafficCounter
+     */
+    public void setBudgetCap(long cap) {
+        if (cap != budgetCap) {
+            budgetCap = cap;
+            capsDirty = true;
+        }
+    }
+
+    /**
+     * 获取集群预算分配给该玩家的上限 (bytes/s)，未限制时返回 -1
+     */
+    public long getBudgetCap() {
+        return budgetCap;
+    }
+
+    /**
+     * 设置流量配额超额后的上限 (bytes/s)，-1 表示未超额
+     * 在下一个统计周期生效
+     */
+    public void setQuotaCap(long cap) {
+        if (cap != quotaCap) {
+            quotaCap = cap;
+            capsDirty = true;
+        }
+    }
+
+    /**
+     * 获取流量配额超额后的上限 (bytes/s)，未超额时返回 -1
+     */
+    public long getQuotaCap() {
+        return quotaCap;
+    }
+
+    /**
+     * 获取当前突发额外限制 (bytes/s)，未处于突发时返回 0
+     */
+    public long getBurstExtra() {
+        return currentBurstExtra;
+    }
+
+    private void releaseBurst() {
+        AtomicLong budget = burstBudget;
+        if (budget != null && burstExtra > 0) {
+            budget.addAndGet(-burstExtra);
+        }
+        burstBudget = null;
+        burstExtra = 0;
+        currentBurstExtra = 0;
+    }
+
     /**
-     * 获取当前出站速率 (bytes/s)
+     * 获取当前实际发送速率 (bytes/s)，即 1 秒时间常数的平均速率，不包含整形队列中等待的数据
      */
     public long getCurrentWriteRate() {
-        return trafficCounter().lastWrittenBytes();
+        return writeRate.getRate1s();
     }
 
     /**
-     * 获取当前入站速率 (bytes/s)
+     * 获取实际发送速率的估算器
      */
-    public long getCurrentReadRate() {
-        return trafficCounter().lastReadBytes();
+    public RateEstimator getWriteRate() {
+        return writeRate;
     }
 
     /**
-     * 获取累计出站总量 (bytes)
+     * 获取累计写入总量 (bytes)，包含整形队列中尚未发送的数据
      */
     public long getTotalWritten() {
-        return trafficCounter().cumulativeWrittenBytes();
+        return totalWritten.get();
+    }
+
+    /**
+     * 获取整形队列中等待发送的字节数，直通模式下为 0
+     */
+    public long queueSize() {
+        PlayerTrafficShaper stage = shaper;
+        return stage != null ? stage.queueSize() : 0;
     }
 
     /**
-     * 获取累计入站总量 (bytes)
+     * 是否处于整形模式
      */
-    public long getTotalRead() {
-        return trafficCounter().cumulativeReadBytes();
+    public boolean isShaping() {
+        return shaper != null;
     }
 
     /**
-     * 更新出站限制
+     * 更新出站限制 (配置值)，自适应整形开启时实际生效值可能更低
      */
     public void setWriteLimit(long writeLimit) {
-        configure(writeLimit, getReadLimit());
+        configuredWriteLimit = writeLimit;
+        requestApply();
     }
 
     /**
-     * 更新入站限制
+     * 更新入站限制，仅在整形模式下生效
      */
     public void setReadLimit(long readLimit) {
-        configure(getWriteLimit(), readLimit);
+        this.readLimit = readLimit;
+        requestApply();
+    }
+
+    /**
+     * 配置直通模式参数
+     *
+     * @param enabled         是否启用直通模式，关闭时始终完整整形
+     * @param escalateRatio   瞬时速率超过生效限制的该比例时切换到整形模式
+     * @param deescalateRatio 平均速率低于生效限制的该比例时开始冷却
+     * @param cooldownNanos   冷却时间 (ns)，期间速率保持较低且队列为空时切回直通模式
+     */
+    public void setPassThrough(boolean enabled, double escalateRatio, double deescalateRatio, long cooldownNanos) {
+        this.escalateRatio = escalateRatio;
+        this.deescalateRatio = Math.min(deescalateRatio, escalateRatio);
+        this.cooldownNanos = cooldownNanos;
+        this.passThroughEnabled = enabled;
+        requestApply();
+
+        ChannelHandlerContext context = ctx;
+        if (!enabled && context != null) {
+            context.executor().execute(() -> escalate(System.nanoTime()));
+        }
+    }
+
+    /**
+     * 配置自适应整形参数
+     *
+     * @param enabled  是否根据 TCP_INFO 调整出站限制
+     * @param floor    自适应限制下限 (bytes/s)
+     * @param headroom 估算能力的余量系数
+     */
+    public void setAdaptive(boolean enabled, long floor, double headroom) {
+        this.adaptiveFloor = floor;
+        this.adaptiveHeadroom = headroom;
+        this.adaptiveEnabled = enabled;
+        if (!enabled) {
+            adaptiveCap = -1;
+        }
+        requestApply();
     }
 
     /**
-     * 获取当前出站限制
+     * 获取当前生效的出站限制 (bytes/s)，0 表示不限制
      */
     public long getWriteLimit() {
-        return trafficCounter().lastWrittenBytes() >= 0 ? super.getWriteLimit() : 0;
+        return effectiveWriteLimit;
+    }
+
+    /**
+     * 获取配置的出站限制 (bytes/s)
+     */
+    public long getConfiguredWriteLimit() {
+        return configuredWriteLimit;
+    }
+
+    /**
+     * 配置链路能力学习参数
+     *
+     * @param enabled  是否学习链路能力并作为出站限制的上限
+     * @param headroom 学习能力的余量系数
+     * @param floor    学习能力下限 (bytes/s)
+     */
+    public void setCapacityLearning(boolean enabled, double headroom, long floor) {
+        this.learnedHeadroom = headroom;
+        this.learnedFloor = floor;
+        this.learningEnabled = enabled;
+        requestApply();
+    }
+
+    /**
+     * 用上次会话保存的链路能力初始化估算值，已有本会话的估算时忽略
+     * 可在任意线程调用，实际修改在 EventLoop 中进行
+     *
+     * @param capacity 链路能力 (bytes/s)
+     */
+    public void seedLearnedCapacity(long capacity) {
+        ChannelHandlerContext context = ctx;
+        if (context != null && !context.executor().inEventLoop()) {
+            context.executor().execute(() -> seedLearnedCapacity(capacity));
+            return;
+        }
+        if (capacity > 0 && learnedCapacity < 0) {
+            seededCapacity = capacity;
+            learnedCapacity = Math.max(learnedFloor, capacity);
+            applyWriteLimit(true);
+        }
+    }
+
+    /**
+     * 获取学习到的链路能力 (bytes/s)，尚无数据时返回 -1
+     */
+    public long getLearnedCapacity() {
+        return learnedCapacity;
+    }
+
+    /**
+     * 获取可以持久化的链路能力 (bytes/s)
+     * 本会话的链路瓶颈样本不足 LEARN_MIN_SAMPLES 个时返回登录时载入的值，都没有时返回 -1
+     */
+    public long getConfirmedCapacity() {
+        return learnedSamples >= LEARN_MIN_SAMPLES ? learnedCapacity : seededCapacity;
+    }
+
+    /**
+     * 获取自适应整形估算的路径限制 (bytes/s)，未启用或尚无数据时返回 -1
+     */
+    public long getAdaptiveCap() {
+        return adaptiveCap;
+    }
+
+    /**
+     * 获取最近一次 TCP_INFO 采样，非 epoll 传输或尚未采样时返回 null
+     */
+    public TcpInfoSampler.Snapshot getTcpInfo() {
+        TcpInfoSampler sampler = tcpInfo;
+        return sampler != null ? sampler.getLatest() : null;
+    }
+
+    /**
+     * 获取按数据包类型的出站统计，未启用时返回 null
+     */
+    public PacketStatsHandler getPacketStats() {
+        return packetStats;
+    }
+
+    /**
+     * 关联按数据包类型的出站统计处理器
+     */
+    public void setPacketStats(PacketStatsHandler packetStats) {
+        this.packetStats = packetStats;
+    }
+
+    /**
+     * 获取积压丢包处理器，未启用时返回 null
+     */
+    public LoadSheddingHandler getLoadShedding() {
+        return loadShedding;
+    }
+
+    /**
+     * 关联积压丢包处理器
+     */
+    public void setLoadShedding(LoadSheddingHandler loadShedding) {
+        this.loadShedding = loadShedding;
     }
 
     /**
      * 获取当前入站限制
      */
     public long getReadLimit() {
-        return super.getReadLimit();
+        return readLimit;
+    }
+
+    /**
+     * 在 EventLoop 中重新计算生效限制，尚未加入 Pipeline 时直接计算
+     * 已有待执行的重新计算时不再提交，一次重新加载中连续调用多个 setter 只重新配置一次
+     */
+    private void requestApply() {
+        ChannelHandlerContext context = ctx;
+        if (context == null) {
+            applyWriteLimit(true);
+        } else if (applyPending.compareAndSet(false, true)) {
+            context.executor().execute(applyTask);
+        }
+    }
+
+    private void applyWriteLimit(boolean force) {
+        long limit = configuredWriteLimit;
+        if (limit > 0) {
+            limit += currentBurstExtra;
+        }
+        long cap = adaptiveCap;
+        if (adaptiveEnabled && cap > 0 && (limit == 0 || cap < limit)) {
+            limit = cap;
+        }
+        long learned = learnedCapacity;
+        if (learningEnabled && learned > 0) {
+            long learnedCap = Math.max(learnedFloor, (long) (learned * learnedHeadroom));
+            if (limit == 0 || learnedCap < limit) {
+                limit = learnedCap;
+            }
+        }
+        long budget = budgetCap;
+        if (budget > 0 && (limit == 0 || budget < limit)) {
+            limit = budget;
+        }
+        long quota = quotaCap;
+        if (quota > 0 && (limit == 0 || quota < limit)) {
+            limit = quota;
+        }
+
+        PlayerTrafficShaper stage = shaper;
+        if (stage != null) {
+            long current = stage.getWriteLimit();
+            if (!force && current > 0 && Math.abs(limit - current) < current * APPLY_THRESHOLD) {
+                return;
+            }
+            // configure 会重置 TrafficCounter 的统计，限制没有变化时跳过
+            if (limit != current || readLimit != stage.getReadLimit()) {
+                stage.configure(limit, readLimit);
+            }
+        }
+        effectiveWriteLimit = limit;
+        escalateThreshold = limit > 0 ? (long) (limit * escalateRatio) : 0;
+    }
+
+    private static long calculateSize(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        if (msg instanceof FileRegion) {
+            return ((FileRegion) msg).count();
+        }
+        return -1;
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,41 @@
 package com.bandwidthlimiter;
 
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 玩家事件监听器
  * 在玩家加入时注入带宽限制处理器，离开时清理
+ * 切换世界、重生、远距离传送时授予突发额度，加快区块加载
+ *
+ * 加入事件不会为每个玩家单独提交延迟任务，而是放入待注入队列，
+ * 由一个全局任务批量取出到期的玩家并按区域批量注入，
+ * 大量玩家同时加入时调度开销基本恒定。
  */
 public class PlayerListener implements Listener {
 
+    /** 注入延迟 1 秒 (20 ticks)，确保连接完全建立 */
+    private static final long INJECT_DELAY_TICKS = 20L;
+    private static final long INJECT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(INJECT_DELAY_TICKS * 50);
+
     private final BandwidthLimiterPlugin plugin;
+    private final Queue<PendingJoin> pendingJoins = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
 
     public PlayerListener(BandwidthLimiterPlugin plugin) {
         this.plugin = plugin;
@@ -22,16 +44,12 @@ public class PlayerListener implements Listener {
     /**
      * 玩家加入时注入带宽限制
      * 使用 MONITOR 优先级确保在其他插件处理完后执行
-     * 延迟 1 tick 执行，确保玩家的 Channel 已完全初始化
+     * 延迟 1 秒执行，确保玩家的 Channel 已完全初始化
      */
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerJoin(PlayerJoinEvent event) {
-        Player player = event.getPlayer();
-
-        // 延迟注入，确保连接完全建立
-        FoliaUtil.runTaskLater(plugin, player, () -> {
-            plugin.getBandwidthManager().injectPlayer(player);
-        }, 20L); // 延迟 1 秒 (20 ticks)
+        pendingJoins.add(new PendingJoin(event.getPlayer(), System.nanoTime() + INJECT_DELAY_NANOS));
+        scheduleFlush(INJECT_DELAY_TICKS);
     }
 
     /**
@@ -42,4 +60,73 @@ public class PlayerListener implements Listener {
         Player player = event.getPlayer();
         plugin.getBandwidthManager().removePlayer(player);
     }
-}
\ No newline at end of file
+
+    /**
+     * 切换世界需要重新加载整个视距内的区块
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        plugin.getBandwidthManager().grantBurst(event.getPlayer());
+    }
+
+    /**
+     * 重生点通常远离死亡位置
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        plugin.getBandwidthManager().grantBurst(event.getPlayer());
+    }
+
+    /**
+     * 同一世界内的远距离传送 (跨世界由 PlayerChangedWorldEvent 处理)
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (to == null || from.getWorld() != to.getWorld()) {
+            return;
+        }
+
+        BandwidthManager manager = plugin.getBandwidthManager();
+        double distance = manager.getBurstTeleportDistance();
+        if (from.distanceSquared(to) >= distance * distance) {
+            manager.grantBurst(event.getPlayer());
+        }
+    }
+
+    private void scheduleFlush(long delayTicks) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            plugin.getTaskScheduler().runGlobalLater(this::flushJoins, delayTicks);
+        }
+    }
+
+    /**
+     * 取出所有已到期的待注入玩家，批量提交注入任务
+     */
+    private void flushJoins() {
+        long now = System.nanoTime();
+        List<Player> due = new ArrayList<>();
+        PendingJoin head;
+        while ((head = pendingJoins.peek()) != null && head.dueNanos - now <= 0) {
+            pendingJoins.poll();
+            due.add(head.player);
+        }
+
+        if (!due.isEmpty()) {
+            BandwidthManager manager = plugin.getBandwidthManager();
+            plugin.getTaskScheduler().runForPlayers(due, manager::injectPlayer);
+        }
+
+        // 先清除标记再检查队列，避免与并发加入的玩家竞争时丢失调度
+        flushScheduled.set(false);
+        head = pendingJoins.peek();
+        if (head != null) {
+            long remainingTicks = TimeUnit.NANOSECONDS.toMillis(head.dueNanos - now) / 50;
+            scheduleFlush(Math.max(1, remainingTicks));
+        }
+    }
+
+    private record PendingJoin(Player player, long dueNanos) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.bandwidthlimiter;
+
+import io.netty.handler.traffic.ChannelTrafficShapingHandler;
+import io.netty.handler.traffic.TrafficCounter;
+
+/**
+ * 完整整形阶段 - 基于 Netty 的 ChannelTrafficShapingHandler
+ *
+ * 只在玩家速率接近限制时由 {@link PlayerBandwidthHandler} 插入到它的前面 (靠近 socket)，
+ * 速率回落并冷却后再移除。移除时 ChannelTrafficShapingHandler 会把队列中剩余的数据直接写出。
+ *
+ * 每个统计周期的回调转交给所属的 PlayerBandwidthHandler，
+ * 由它处理自适应、突发衰减、预算上限和切回直通模式。
+ */
+class PlayerTrafficShaper extends ChannelTrafficShapingHandler {
+
+    private final PlayerBandwidthHandler owner;
+
+    /**
+     * @param owner         所属的带宽处理器
+     * @param writeLimit    出站限制 (bytes/s), 0 = 不限制
+     * @param readLimit     入站限制 (bytes/s), 0 = 不限制
+     * @param checkInterval 检查间隔 (ms)
+     */
+    PlayerTrafficShaper(PlayerBandwidthHandler owner, long writeLimit, long readLimit, long checkInterval) {
+        super(writeLimit, readLimit, checkInterval);
+        this.owner = owner;
+    }
+
+    /**
+     * 每个统计周期结束时由 TrafficCounter 在 EventLoop 中回调
+     */
+    @Override
+    protected void doAccounting(TrafficCounter counter) {
+        owner.onTick(System.nanoTime());
+    }
+}
@@ -0,0 +1,111 @@
+package com.bandwidthlimiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多窗口指数加权速率估算器
+ *
+ * 写路径只累加字节数，每隔 TICK (250ms) 把累计量折算为瞬时速率，
+ * 再分别以 1s / 10s / 60s 的时间常数做指数加权平均:
+ *   avg += (1 - e^(-dt/tau)) * (instant - avg)
+ * 这样既不用等待完整的统计周期结束，也不会像单个周期的字节数那样抖动。
+ *
+ * record / tick 只能在同一线程 (Channel 的 EventLoop) 中调用，不分配对象；
+ * 读取方法可在任意线程调用，距离上次折算超过一个 TICK 时按空闲时间衰减，
+ * 因此没有写操作的连接也不需要定时器。
+ */
+public class RateEstimator {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final double TAU_1S = 1.0;
+    private static final double TAU_10S = 10.0;
+    private static final double TAU_60S = 60.0;
+
+    // 仅在写线程中访问
+    private long pendingBytes;
+    private volatile long lastTickNanos;
+
+    private volatile double instantRate;
+    private volatile double rate1s;
+    private volatile double rate10s;
+    private volatile double rate60s;
+
+    public RateEstimator() {
+        this.lastTickNanos = System.nanoTime();
+    }
+
+    /**
+     * 记录写出的字节数
+     *
+     * @return 本次调用是否完成了一次折算 (约每 250ms 一次)
+     */
+    public boolean record(long bytes, long nowNanos) {
+        pendingBytes += bytes;
+        if (nowNanos - lastTickNanos >= TICK_NANOS) {
+            fold(nowNanos);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 推进时间，没有写操作时让各平均值按时间衰减
+     */
+    public void tick(long nowNanos) {
+        if (nowNanos - lastTickNanos >= TICK_NANOS) {
+            fold(nowNanos);
+        }
+    }
+
+    private void fold(long nowNanos) {
+        double seconds = (nowNanos - lastTickNanos) / 1e9;
+        double instant = pendingBytes / seconds;
+        pendingBytes = 0;
+        lastTickNanos = nowNanos;
+
+        instantRate = instant;
+        rate1s = decay(rate1s, instant, seconds, TAU_1S);
+        rate10s = decay(rate10s, instant, seconds, TAU_10S);
+        rate60s = decay(rate60s, instant, seconds, TAU_60S);
+    }
+
+    private static double decay(double average, double sample, double seconds, double tau) {
+        return average + (1.0 - Math.exp(-seconds / tau)) * (sample - average);
+    }
+
+    /**
+     * 按上次折算之后的空闲时间衰减 (期间没有写入，相当于瞬时速率为 0)
+     */
+    private double idleDecay(double average, double tau) {
+        long idle = System.nanoTime() - lastTickNanos - TICK_NANOS;
+        return idle > 0 ? average * Math.exp(-idle / 1e9 / tau) : average;
+    }
+
+    /**
+     * 最近一个 TICK 内的瞬时速率 (bytes/s)
+     */
+    public long getInstantRate() {
+        return System.nanoTime() - lastTickNanos > 2 * TICK_NANOS ? 0 : (long) instantRate;
+    }
+
+    /**
+     * 1 秒时间常数的平均速率 (bytes/s)
+     */
+    public long getRate1s() {
+        return (long) idleDecay(rate1s, TAU_1S);
+    }
+
+    /**
+     * 10 秒时间常数的平均速率 (bytes/s)
+     */
+    public long getRate10s() {
+        return (long) idleDecay(rate10s, TAU_10S);
+    }
+
+    /**
+     * 60 秒时间常数的平均速率 (bytes/s)
+     */
+    public long getRate60s() {
+        return (long) idleDecay(rate60s, TAU_60S);
+    }
+}
@@ -0,0 +1,62 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * 调度器门面
+ *
+ * Folia 使用区域化多线程，不能使用传统的 BukkitScheduler。
+ * 插件启动时根据运行环境绑定一次具体实现，之后的每次调度都是直接调用，
+ * 不再通过反射查找方法:
+ * - Folia: {@link FoliaTaskScheduler} (EntityScheduler / GlobalRegionScheduler / AsyncScheduler)
+ * - Paper/Spigot: {@link BukkitTaskScheduler} (BukkitScheduler)
+ */
+public interface TaskScheduler {
+
+    /**
+     * 根据运行环境创建调度器
+     */
+    static TaskScheduler create(BandwidthLimiterPlugin plugin) {
+        return plugin.isFolia() ? new FoliaTaskScheduler(plugin) : new BukkitTaskScheduler(plugin);
+    }
+
+    /**
+     * 批量在每个玩家所在区域执行任务
+     * Folia 下每个玩家提交一个实体调度器任务，不按区域合并 (见 {@link FoliaTaskScheduler})；
+     * Paper 下整批只提交一次任务。已离线的玩家会被跳过。
+     */
+    void runForPlayers(Collection<? extends Player> players, Consumer<Player> action);
+
+    /**
+     * 在全局区域 (Paper: 主线程) 延迟执行任务
+     */
+    void runGlobalLater(Runnable task, long delayTicks);
+
+    /**
+     * 在异步线程执行任务
+     */
+    void runAsync(Runnable task);
+
+    /**
+     * 在异步线程周期执行任务
+     *
+     * @param initialDelayMs 首次执行延迟 (ms)
+     * @param periodMs       执行周期 (ms)
+     */
+    Task runAsyncTimer(Runnable task, long initialDelayMs, long periodMs);
+
+    /**
+     * 取消本插件提交的所有任务
+     */
+    void cancelAll();
+
+    /**
+     * 可取消的周期任务
+     */
+    interface Task {
+        void cancel();
+    }
+}
@@ -0,0 +1,160 @@
+package com.bandwidthlimiter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.epoll.EpollTcpInfo;
+
+/**
+ * 内核 TCP_INFO 采样器 - 仅在 Netty epoll 传输下可用
+ *
+ * 通过 getsockopt(TCP_INFO) 读取每个连接的 RTT、拥塞窗口、未确认数据、
+ * 重传次数等指标，用于估算该玩家网络路径的实际承载能力。
+ *
+ * 服务端使用 NIO 传输或 epoll 原生库不可用时，{@link #create(Channel)} 返回 null，
+ * 调用方应回退到固定限速。
+ */
+public final class TcpInfoSampler {
+
+    private static final boolean AVAILABLE = detectEpoll();
+
+    private final EpollSocketChannel channel;
+    private final EpollTcpInfo info = new EpollTcpInfo();
+    private long lastTotalRetrans = -1;
+    private volatile Snapshot latest;
+
+    private TcpInfoSampler(EpollSocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 为 Channel 创建采样器，非 epoll Channel 返回 null
+     */
+    public static TcpInfoSampler create(Channel channel) {
+        if (!AVAILABLE || !(channel instanceof EpollSocketChannel)) {
+            return null;
+        }
+        return new TcpInfoSampler((EpollSocketChannel) channel);
+    }
+
+    /**
+     * 读取一次 TCP_INFO，必须在 Channel 的 EventLoop 中调用
+     *
+     * @return 本次采样结果，Channel 已关闭或读取失败时返回 null
+     */
+    public Snapshot sample() {
+        if (!channel.isActive()) {
+            return null;
+        }
+        try {
+            channel.tcpInfo(info);
+        } catch (Exception e) {
+            return null;
+        }
+
+        long totalRetrans = info.totalRetrans();
+        long retransDelta = lastTotalRetrans < 0 ? 0 : Math.max(0, totalRetrans - lastTotalRetrans);
+        lastTotalRetrans = totalRetrans;
+
+        long pendingBytes = flushedPendingBytes(channel);
+
+        Snapshot snapshot = new Snapshot(
+            info.rtt(),
+            info.rttvar(),
+            info.sndCwnd(),
+            info.sndMss(),
+            info.unacked(),
+            totalRetrans,
+            retransDelta,
+            pendingBytes
+        );
+        latest = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * 最近一次采样结果 (可在任意线程读取)，尚未采样时返回 null
+     */
+    public Snapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * 已 flush 但尚未写入 socket 的字节数，必须在 Channel 的 EventLoop 中调用
+     * 不包含已 write 未 flush 的数据，因此写入批次进行中不会被误判为积压
+     */
+    static long flushedPendingBytes(Channel channel) {
+        ChannelOutboundBuffer outbound = channel.unsafe().outboundBuffer();
+        if (outbound == null || outbound.size() == 0) {
+            return 0;
+        }
+        long[] bytes = new long[1];
+        try {
+            outbound.forEachFlushedMessage(msg -> {
+                if (msg instanceof ByteBuf) {
+                    bytes[0] += ((ByteBuf) msg).readableBytes();
+                } else if (msg instanceof ByteBufHolder) {
+                    bytes[0] += ((ByteBufHolder) msg).content().readableBytes();
+                }
+                return true;
+            });
+        } catch (Exception e) {
+            return 0;
+        }
+        return bytes[0];
+    }
+
+    private static boolean detectEpoll() {
+        try {
+            Class.forName("io.netty.channel.epoll.EpollSocketChannel");
+            return Epoll.isAvailable();
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * 单次 TCP_INFO 采样
+     *
+     * @param rttMicros      平滑 RTT (微秒)
+     * @param rttVarMicros   RTT 方差 (微秒)
+     * @param sndCwnd        拥塞窗口 (报文段数)
+     * @param sndMss         发送 MSS (bytes)
+     * @param unacked        已发送未确认的报文段数
+     * @param totalRetrans   连接累计重传次数
+     * @param retransDelta   距上次采样新增的重传次数
+     * @param pendingBytes   Netty 出站缓冲区中已 flush 但尚未写入 socket 的字节数
+     */
+    public record Snapshot(long rttMicros, long rttVarMicros, long sndCwnd, long sndMss,
+                           long unacked, long totalRetrans, long retransDelta, long pendingBytes) {
+
+        /**
+         * 按 cwnd * mss / rtt 估算的路径吞吐 (bytes/s)，RTT 无效时返回 -1
+         */
+        public long estimatedCapacity() {
+            if (rttMicros <= 0 || sndCwnd <= 0 || sndMss <= 0) {
+                return -1;
+            }
+            return sndCwnd * sndMss * 1_000_000L / rttMicros;
+        }
+
+        /**
+         * 发送方是否受网络限制: 出站缓冲区有积压，或拥塞窗口已被在途数据占满
+         * 应用层没有数据可发 (app-limited) 或空闲时内核会收缩 cwnd，
+         * 此时的 cwnd * mss / rtt 远低于路径的实际能力，不应作为能力样本
+         */
+        public boolean backlogged() {
+            return pendingBytes > 0 || (sndCwnd > 0 && unacked >= sndCwnd);
+        }
+
+        /**
+         * 在途未确认字节数的近似值 (bytes)
+         */
+        public long unackedBytes() {
+            return unacked * sndMss;
+        }
+    }
+}
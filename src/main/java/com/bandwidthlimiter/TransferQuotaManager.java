@@ -0,0 +1,378 @@
+package com.bandwidthlimiter;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每玩家流量配额 (每日 / 每月)
+ *
+ * 定时读取各玩家处理器的累计出站字节数，把增量计入当日和当月用量，
+ * 玩家退出时再计入最后一次增量，短于采样间隔的会话也不会漏算。
+ * 用量异步写入 usage.yml (先写临时文件再原子替换)，重启后继续累计；
+ * 离线且当日、当月用量都已清零的记录会被丢弃。
+ * 超出任一配额后，玩家的出站限制降到 throttled-limit-kbps，直到对应周期结束。
+ *
+ * 周期按配置的时区划分，跨日 / 跨月时在下一次采样中清零。
+ */
+public class TransferQuotaManager {
+
+    private static final String USAGE_FILE = "usage.yml";
+
+    private final BandwidthLimiterPlugin plugin;
+    private final BandwidthManager manager;
+    private final File usageFile;
+    private final Map<UUID, Usage> usages = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+    private volatile long dailyQuota;   // bytes, 0 = 不限制
+    private volatile long monthlyQuota; // bytes, 0 = 不限制
+    private volatile long throttledLimit; // bytes/s
+    private volatile ZoneId zone = ZoneId.systemDefault();
+    private volatile boolean saveRequired; // 有记录被丢弃或上次保存失败
+    private boolean loaded;
+    private TaskScheduler.Task sampleTask;
+    private TaskScheduler.Task flushTask;
+
+    public TransferQuotaManager(BandwidthLimiterPlugin plugin, BandwidthManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.usageFile = new File(plugin.getDataFolder(), USAGE_FILE);
+    }
+
+    /**
+     * 加载配额配置并 (重新) 启动采样和保存任务，首次调用时读取已保存的用量
+     */
+    public void loadConfig(FileConfiguration config) {
+        stopTasks();
+
+        boolean wasEnabled = enabled;
+        boolean nowEnabled = config.getBoolean("quota.enabled", false);
+        if (wasEnabled && !nowEnabled) {
+            // 关闭前计入最后一次增量并保存，否则会丢失最多一个保存周期的用量
+            sample();
+            save();
+        }
+
+        enabled = nowEnabled;
+        dailyQuota = Math.max(0, config.getLong("quota.daily-mb", 0)) * 1024 * 1024;
+        monthlyQuota = Math.max(0, config.getLong("quota.monthly-mb", 0)) * 1024 * 1024;
+        throttledLimit = Math.max(1, config.getLong("quota.throttled-limit-kbps", 64)) * 1024;
+        String timezone = config.getString("quota.timezone", "");
+        try {
+            zone = timezone == null || timezone.isEmpty() ? ZoneId.systemDefault() : ZoneId.of(timezone);
+        } catch (Exception e) {
+            plugin.getLogger().warning("无效的配额时区: " + timezone + "，使用系统时区");
+            zone = ZoneId.systemDefault();
+        }
+
+        if (!enabled) {
+            for (PlayerBandwidthHandler handler : manager.getHandlers()) {
+                handler.setQuotaCap(-1);
+            }
+            return;
+        }
+
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+        if (!wasEnabled) {
+            rebase();
+        }
+
+        long sampleMs = Math.max(1, config.getLong("quota.sample-interval-seconds", 5)) * 1000;
+        long flushMs = Math.max(5, config.getLong("quota.flush-interval-seconds", 60)) * 1000;
+        sampleTask = plugin.getTaskScheduler().runAsyncTimer(this::sample, sampleMs, sampleMs);
+        flushTask = plugin.getTaskScheduler().runAsyncTimer(this::save, flushMs, flushMs);
+    }
+
+    /**
+     * 停止任务并同步保存用量 (插件禁用时调用，需在移除处理器之前)
+     */
+    public void stop() {
+        stopTasks();
+        if (enabled) {
+            sample();
+            save();
+        }
+    }
+
+    private void stopTasks() {
+        if (sampleTask != null) {
+            sampleTask.cancel();
+            sampleTask = null;
+        }
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+    }
+
+    /**
+     * 玩家注入后立即应用配额状态，已超额的玩家不会先以正常速率加载区块
+     */
+    public void apply(UUID uuid, PlayerBandwidthHandler handler) {
+        if (!enabled) {
+            return;
+        }
+        Usage usage = usages.get(uuid);
+        if (usage == null) {
+            return;
+        }
+        synchronized (usage) {
+            usage.roll(today());
+            handler.setQuotaCap(isExceeded(usage) ? throttledLimit : -1);
+        }
+    }
+
+    /**
+     * 计入玩家处理器自上次采样以来的增量 (玩家退出、移除处理器之前调用)
+     */
+    public void record(UUID uuid, PlayerBandwidthHandler handler) {
+        if (enabled) {
+            account(uuid, handler, today());
+        }
+    }
+
+    /**
+     * 采样所有玩家的出站增量并更新限速状态，在异步线程中执行
+     */
+    private void sample() {
+        LocalDate today = today();
+        for (PlayerBandwidthHandler handler : manager.getHandlers()) {
+            account(handler.getPlayerUuid(), handler, today);
+        }
+
+        // 离线玩家不再持有处理器引用，用量已清零的离线记录直接丢弃
+        for (UUID uuid : usages.keySet()) {
+            usages.computeIfPresent(uuid, (key, usage) -> {
+                synchronized (usage) {
+                    PlayerBandwidthHandler handler = usage.handler;
+                    if (handler != null && manager.getHandler(key) != handler) {
+                        usage.handler = null;
+                    }
+                    usage.roll(today);
+                    if (usage.handler == null && usage.daily == 0 && usage.monthly == 0) {
+                        saveRequired = true;
+                        return null;
+                    }
+                    return usage;
+                }
+            });
+        }
+    }
+
+    /**
+     * 以在线玩家处理器的当前累计值为起点，启用配额之前的流量不计入用量
+     */
+    private void rebase() {
+        for (PlayerBandwidthHandler handler : manager.getHandlers()) {
+            usages.compute(handler.getPlayerUuid(), (key, usage) -> {
+                if (usage == null) {
+                    usage = new Usage();
+                }
+                synchronized (usage) {
+                    usage.handler = handler;
+                    usage.lastTotal = handler.getTotalWritten();
+                }
+                return usage;
+            });
+        }
+    }
+
+    /**
+     * 把处理器的累计值增量计入用量并更新限速状态
+     * 通过 compute 与丢弃记录互斥，增量不会写入已被丢弃的记录
+     */
+    private void account(UUID uuid, PlayerBandwidthHandler handler, LocalDate today) {
+        usages.compute(uuid, (key, usage) -> {
+            if (usage == null) {
+                usage = new Usage();
+            }
+            synchronized (usage) {
+                long total = handler.getTotalWritten();
+                // 重新注入后是新的处理器，累计值从 0 开始
+                long delta = usage.handler == handler ? total - usage.lastTotal : total;
+                usage.handler = handler;
+                usage.lastTotal = total;
+
+                usage.roll(today);
+                if (delta > 0) {
+                    usage.daily += delta;
+                    usage.monthly += delta;
+                    usage.dirty = true;
+                }
+                handler.setQuotaCap(isExceeded(usage) ? throttledLimit : -1);
+            }
+            return usage;
+        });
+    }
+
+    private boolean isExceeded(Usage usage) {
+        return (dailyQuota > 0 && usage.daily >= dailyQuota)
+            || (monthlyQuota > 0 && usage.monthly >= monthlyQuota);
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(zone);
+    }
+
+    private void load() {
+        if (!usageFile.exists()) {
+            return;
+        }
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(usageFile);
+        LocalDate today = today();
+        for (String key : yaml.getKeys(false)) {
+            ConfigurationSection section = yaml.getConfigurationSection(key);
+            if (section == null) {
+                continue;
+            }
+            try {
+                Usage usage = new Usage();
+                usage.day = section.getLong("day");
+                usage.daily = section.getLong("daily");
+                usage.month = section.getLong("month");
+                usage.monthly = section.getLong("monthly");
+                usage.roll(today);
+                if (usage.daily > 0 || usage.monthly > 0) {
+                    usages.put(UUID.fromString(key), usage);
+                }
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("忽略无效的流量记录: " + key);
+            }
+        }
+    }
+
+    /**
+     * 保存用量，没有变化时跳过
+     */
+    private synchronized void save() {
+        YamlConfiguration yaml = new YamlConfiguration();
+        boolean changed = saveRequired;
+        saveRequired = false;
+        for (Map.Entry<UUID, Usage> entry : usages.entrySet()) {
+            Usage usage = entry.getValue();
+            synchronized (usage) {
+                changed |= usage.dirty;
+                usage.dirty = false;
+                if (usage.daily == 0 && usage.monthly == 0) {
+                    continue;
+                }
+                String key = entry.getKey().toString();
+                yaml.set(key + ".day", usage.day);
+                yaml.set(key + ".daily", usage.daily);
+                yaml.set(key + ".month", usage.month);
+                yaml.set(key + ".monthly", usage.monthly);
+            }
+        }
+        if (!changed) {
+            return;
+        }
+
+        // 先写临时文件再原子替换，写入中途崩溃不会截断已有的月度用量
+        File temp = new File(usageFile.getParentFile(), USAGE_FILE + ".tmp");
+        try {
+            yaml.save(temp);
+            Files.move(temp.toPath(), usageFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            saveRequired = true;
+            plugin.getLogger().severe("保存流量记录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 配额是否启用
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 当日已用流量 (bytes)
+     */
+    public long getDailyUsage(UUID uuid) {
+        Usage usage = usages.get(uuid);
+        if (usage == null) {
+            return 0;
+        }
+        synchronized (usage) {
+            return usage.day == today().toEpochDay() ? usage.daily : 0;
+        }
+    }
+
+    /**
+     * 当月已用流量 (bytes)
+     */
+    public long getMonthlyUsage(UUID uuid) {
+        Usage usage = usages.get(uuid);
+        if (usage == null) {
+            return 0;
+        }
+        synchronized (usage) {
+            return usage.month == monthKey(today()) ? usage.monthly : 0;
+        }
+    }
+
+    public long getDailyQuota() {
+        return dailyQuota;
+    }
+
+    public long getMonthlyQuota() {
+        return monthlyQuota;
+    }
+
+    /**
+     * 超额后的出站限制 (bytes/s)
+     */
+    public long getThrottledLimit() {
+        return throttledLimit;
+    }
+
+    private static long monthKey(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    /**
+     * 单个玩家的用量，通过 synchronized 保护
+     */
+    private static class Usage {
+        long day;
+        long daily;
+        long month;
+        long monthly;
+        boolean dirty;
+        PlayerBandwidthHandler handler;
+        long lastTotal;
+
+        /**
+         * 跨日 / 跨月时清零对应用量
+         */
+        void roll(LocalDate today) {
+            long currentDay = today.toEpochDay();
+            if (day != currentDay) {
+                day = currentDay;
+                daily = 0;
+                dirty = true;
+            }
+            long currentMonth = monthKey(today);
+            if (month != currentMonth) {
+                month = currentMonth;
+                monthly = 0;
+                dirty = true;
+            }
+        }
+    }
+}
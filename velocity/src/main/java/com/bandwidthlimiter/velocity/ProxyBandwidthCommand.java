@@ -0,0 +1,225 @@
+package com.bandwidthlimiter.velocity;
+
+import com.bandwidthlimiter.PlayerBandwidthHandler;
+import com.bandwidthlimiter.RateEstimator;
+import com.bandwidthlimiter.TcpInfoSampler;
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * 代理端命令处理器
+ *
+ * 命令:
+ *   /bwlproxy set <玩家> <KB/s>   - 设置玩家带宽限制
+ *   /bwlproxy remove <玩家>         - 移除玩家独立限制
+ *   /bwlproxy info <玩家>           - 查看玩家带宽信息
+ *   /bwlproxy list                   - 列出所有在线玩家的带宽状态
+ *   /bwlproxy reload                 - 重新加载配置
+ */
+public class ProxyBandwidthCommand implements SimpleCommand {
+
+    private static final Component PREFIX = Component.text("[BWL] ", NamedTextColor.GREEN);
+
+    private final ProxyServer server;
+    private final ProxyBandwidthManager manager;
+
+    public ProxyBandwidthCommand(ProxyServer server, ProxyBandwidthManager manager) {
+        this.server = server;
+        this.manager = manager;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        CommandSource source = invocation.source();
+        String[] args = invocation.arguments();
+
+        if (args.length == 0) {
+            sendHelp(source);
+            return;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "set":
+                handleSet(source, args);
+                break;
+
+            case "remove":
+            case "reset":
+                handleRemove(source, args);
+                break;
+
+            case "info":
+            case "check":
+                handleInfo(source, args);
+                break;
+
+            case "list":
+                handleList(source);
+                break;
+
+            case "reload":
+                manager.loadConfig();
+                for (Player player : server.getAllPlayers()) {
+                    manager.updatePlayerLimit(player);
+                }
+                send(source, Component.text("配置已重新加载！", NamedTextColor.GREEN));
+                break;
+
+            default:
+                sendHelp(source);
+                break;
+        }
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("bandwidthlimiter.admin");
+    }
+
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        String[] args = invocation.arguments();
+        if (args.length <= 1) {
+            return filter(Arrays.asList("set", "remove", "info", "list", "reload"),
+                args.length == 0 ? "" : args[0]);
+        }
+        if (args.length == 2) {
+            return filter(server.getAllPlayers().stream()
+                .map(Player::getUsername)
+                .collect(Collectors.toList()), args[1]);
+        }
+        if (args.length == 3 && args[0].equalsIgnoreCase("set")) {
+            return Arrays.asList("128", "256", "512", "1024", "2048");
+        }
+        return new ArrayList<>();
+    }
+
+    private void handleSet(CommandSource source, String[] args) {
+        if (args.length < 3) {
+            send(source, Component.text("用法: /bwlproxy set <玩家> <KB/s>", NamedTextColor.RED));
+            return;
+        }
+
+        Optional<Player> target = server.getPlayer(args[1]);
+        if (target.isEmpty()) {
+            send(source, Component.text("玩家 " + args[1] + " 不在线", NamedTextColor.RED));
+            return;
+        }
+
+        long limit;
+        try {
+            limit = Long.parseLong(args[2]);
+            if (limit <= 0) {
+                send(source, Component.text("带宽限制必须大于 0", NamedTextColor.RED));
+                return;
+            }
+        } catch (NumberFormatException e) {
+            send(source, Component.text("无效的数字: " + args[2], NamedTextColor.RED));
+            return;
+        }
+
+        Player player = target.get();
+        manager.setPlayerLimit(player.getUniqueId(), limit);
+        manager.updatePlayerLimit(player);
+        send(source, Component.text("已将玩家 " + player.getUsername() + " 的带宽限制设置为 "
+            + limit + " KB/s", NamedTextColor.GREEN));
+    }
+
+    private void handleRemove(CommandSource source, String[] args) {
+        if (args.length < 2) {
+            send(source, Component.text("用法: /bwlproxy remove <玩家>", NamedTextColor.RED));
+            return;
+        }
+
+        Optional<Player> target = server.getPlayer(args[1]);
+        if (target.isEmpty()) {
+            send(source, Component.text("玩家 " + args[1] + " 不在线", NamedTextColor.RED));
+            return;
+        }
+
+        Player player = target.get();
+        manager.removePlayerLimit(player.getUniqueId());
+        manager.updatePlayerLimit(player);
+        send(source, Component.text("已移除玩家 " + player.getUsername() + " 的独立限制，现在使用默认值: "
+            + manager.getDefaultLimit() + " KB/s", NamedTextColor.GREEN));
+    }
+
+    private void handleInfo(CommandSource source, String[] args) {
+        Optional<Player> target = args.length >= 2
+            ? server.getPlayer(args[1])
+            : (source instanceof Player ? Optional.of((Player) source) : Optional.empty());
+        if (target.isEmpty()) {
+            send(source, Component.text("用法: /bwlproxy info <玩家>", NamedTextColor.RED));
+            return;
+        }
+
+        Player player = target.get();
+        PlayerBandwidthHandler handler = manager.getHandler(player);
+        send(source, Component.text("=== " + player.getUsername() + " 带宽信息 ===", NamedTextColor.AQUA));
+        send(source, Component.text("带宽上限: " + manager.getPlayerLimit(player) + " KB/s", NamedTextColor.YELLOW));
+        if (handler == null) {
+            send(source, Component.text("状态: 未注入", NamedTextColor.RED));
+            return;
+        }
+
+        send(source, Component.text(String.format("当前速率: %.2f KB/s (生效上限 %d KB/s)",
+            handler.getCurrentWriteRate() / 1024.0, handler.getWriteLimit() / 1024), NamedTextColor.WHITE));
+
+        RateEstimator rate = handler.getWriteRate();
+        send(source, Component.text(String.format("平均速率: 10s %.1f / 60s %.1f KB/s (瞬时 %.1f KB/s)",
+            rate.getRate10s() / 1024.0, rate.getRate60s() / 1024.0, rate.getInstantRate() / 1024.0),
+            NamedTextColor.GRAY));
+
+        TcpInfoSampler.Snapshot tcp = handler.getTcpInfo();
+        if (tcp != null) {
+            send(source, Component.text(String.format("RTT %.1f ms, cwnd %d × %d B, 重传 %d, 发送队列 %d KB",
+                tcp.rttMicros() / 1000.0, tcp.sndCwnd(), tcp.sndMss(), tcp.totalRetrans(),
+                tcp.pendingBytes() / 1024), NamedTextColor.GRAY));
+        }
+    }
+
+    private void handleList(CommandSource source) {
+        send(source, Component.text("=== 在线玩家带宽状态 ===", NamedTextColor.AQUA));
+        for (Player player : server.getAllPlayers()) {
+            PlayerBandwidthHandler handler = manager.getHandler(player);
+            long limit = manager.getPlayerLimit(player);
+            String rate = handler != null
+                ? String.format("%.1f/%d KB/s", handler.getCurrentWriteRate() / 1024.0, limit)
+                : "-/" + limit + " KB/s";
+            String serverName = player.getCurrentServer()
+                .map(connection -> connection.getServerInfo().getName())
+                .orElse("-");
+            send(source, Component.text(player.getUsername() + " [" + serverName + "] - " + rate,
+                handler != null ? NamedTextColor.WHITE : NamedTextColor.GRAY));
+        }
+    }
+
+    private void sendHelp(CommandSource source) {
+        send(source, Component.text("=== BandwidthLimiter (代理端) 帮助 ===", NamedTextColor.AQUA));
+        send(source, Component.text("/bwlproxy set <玩家> <KB/s> - 设置带宽限制", NamedTextColor.YELLOW));
+        send(source, Component.text("/bwlproxy remove <玩家> - 移除独立限制", NamedTextColor.YELLOW));
+        send(source, Component.text("/bwlproxy info [玩家] - 查看带宽信息", NamedTextColor.YELLOW));
+        send(source, Component.text("/bwlproxy list - 列出所有玩家状态", NamedTextColor.YELLOW));
+        send(source, Component.text("/bwlproxy reload - 重新加载配置", NamedTextColor.YELLOW));
+    }
+
+    private void send(CommandSource source, Component message) {
+        source.sendMessage(PREFIX.append(message));
+    }
+
+    private List<String> filter(List<String> options, String input) {
+        return options.stream()
+            .filter(s -> s.toLowerCase().startsWith(input.toLowerCase()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,284 @@
+package com.bandwidthlimiter.velocity;
+
+import com.bandwidthlimiter.LimitTable;
+import com.bandwidthlimiter.PlayerBandwidthHandler;
+import com.velocitypowered.api.proxy.Player;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理端带宽管理器
+ *
+ * 与服务端的 BandwidthManager 使用同一个 {@link PlayerBandwidthHandler} 和 {@link LimitTable}，
+ * 但注入的是代理面向客户端的 Channel。玩家在后端服务器之间切换时 Channel 不变，
+ * 因此整个网络中每个玩家只有一个整形点，限制也不会随服务器变化。
+ */
+public class ProxyBandwidthManager {
+
+    private static final String HANDLER_NAME = "bandwidth_limiter";
+
+    private final Logger logger;
+    private final Path configFile;
+    private final Path limitsFile;
+    private final Map<UUID, PlayerBandwidthHandler> handlers = new ConcurrentHashMap<>();
+    private final LimitTable limits = new LimitTable(512);
+
+    private boolean adaptiveEnabled = true;
+    private long adaptiveMinKBps = 64;
+    private double adaptiveHeadroom = 1.5;
+    private boolean passThroughEnabled = true;
+    private double passThroughEscalateRatio = 0.7;
+    private double passThroughDeescalateRatio = 0.5;
+    private long passThroughCooldownSeconds = 10;
+    private boolean burstEnabled = true;
+    private double burstMultiplier = 3.0;
+    private long burstDurationSeconds = 10;
+    private long burstDecaySeconds = 5;
+
+    // ConnectedPlayer.getConnection() / MinecraftConnection.getChannel()，首次使用时解析
+    private volatile Method getConnection;
+    private volatile Method getChannel;
+
+    public ProxyBandwidthManager(Logger logger, Path dataDirectory) {
+        this.logger = logger;
+        this.configFile = dataDirectory.resolve("config.properties");
+        this.limitsFile = dataDirectory.resolve("player-limits.properties");
+    }
+
+    /**
+     * 从配置文件加载设置，首次运行时生成默认配置
+     */
+    public void loadConfig() {
+        try {
+            Files.createDirectories(configFile.getParent());
+            if (Files.notExists(configFile)) {
+                try (InputStream in = getClass().getResourceAsStream("/config.properties")) {
+                    if (in != null) {
+                        Files.copy(in, configFile);
+                    }
+                }
+            }
+
+            Properties config = load(configFile);
+            limits.setDefault(Long.parseLong(config.getProperty("default-limit-kbps", "512")));
+            adaptiveEnabled = Boolean.parseBoolean(config.getProperty("adaptive-shaping.enabled", "true"));
+            adaptiveMinKBps = Math.max(1, Long.parseLong(config.getProperty("adaptive-shaping.min-limit-kbps", "64")));
+            adaptiveHeadroom = Math.max(1.0, Double.parseDouble(config.getProperty("adaptive-shaping.headroom", "1.5")));
+            passThroughEnabled = Boolean.parseBoolean(config.getProperty("pass-through.enabled", "true"));
+            passThroughEscalateRatio = Math.max(0.0, Double.parseDouble(config.getProperty("pass-through.escalate-ratio", "0.7")));
+            passThroughDeescalateRatio = Math.max(0.0, Double.parseDouble(config.getProperty("pass-through.deescalate-ratio", "0.5")));
+            passThroughCooldownSeconds = Math.max(0, Long.parseLong(config.getProperty("pass-through.cooldown-seconds", "10")));
+            burstEnabled = Boolean.parseBoolean(config.getProperty("burst.enabled", "true"));
+            burstMultiplier = Math.max(1.0, Double.parseDouble(config.getProperty("burst.multiplier", "3.0")));
+            burstDurationSeconds = Math.max(0, Long.parseLong(config.getProperty("burst.duration-seconds", "10")));
+            burstDecaySeconds = Math.max(0, Long.parseLong(config.getProperty("burst.decay-seconds", "5")));
+
+            limits.clear();
+            Properties playerLimits = load(limitsFile);
+            for (String key : playerLimits.stringPropertyNames()) {
+                try {
+                    limits.set(UUID.fromString(key), Long.parseLong(playerLimits.getProperty(key)));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("忽略无效的玩家限制: {}={}", key, playerLimits.getProperty(key));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.error("加载配置失败: {}", e.getMessage());
+        }
+
+        logger.info("配置已重新加载 - 默认限制: {} KB/s", limits.getDefault());
+    }
+
+    /**
+     * 获取玩家面向客户端的 Netty Channel
+     */
+    public Channel getPlayerChannel(Player player) {
+        try {
+            if (getConnection == null) {
+                getConnection = player.getClass().getMethod("getConnection");
+            }
+            Object connection = getConnection.invoke(player);
+            if (getChannel == null) {
+                getChannel = connection.getClass().getMethod("getChannel");
+            }
+            return (Channel) getChannel.invoke(connection);
+        } catch (Exception e) {
+            logger.error("获取玩家 {} 的 Channel 失败: {}", player.getUsername(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * 为玩家注入带宽限制处理器
+     */
+    public void injectPlayer(Player player) {
+        if (player.hasPermission("bandwidthlimiter.bypass")) {
+            return;
+        }
+
+        Channel channel = getPlayerChannel(player);
+        if (channel == null) {
+            return;
+        }
+
+        long limitBps = limits.get(player.getUniqueId()) * 1024;
+
+        channel.eventLoop().execute(() -> {
+            try {
+                ChannelPipeline pipeline = channel.pipeline();
+                if (pipeline.get(HANDLER_NAME) != null) {
+                    pipeline.remove(HANDLER_NAME);
+                }
+
+                PlayerBandwidthHandler handler = new PlayerBandwidthHandler(
+                    player.getUniqueId(), 0, limitBps, 1000);
+                handler.setAdaptive(adaptiveEnabled, adaptiveMinKBps * 1024, adaptiveHeadroom);
+                applyPassThrough(handler);
+
+                // 添加到最前端，整形的是压缩、加密后的实际字节流
+                pipeline.addFirst(HANDLER_NAME, handler);
+                handlers.put(player.getUniqueId(), handler);
+                grantBurst(player);
+            } catch (Exception e) {
+                logger.error("注入玩家 {} 的带宽限制处理器失败: {}", player.getUsername(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 移除玩家的带宽限制处理器
+     */
+    public void removePlayer(Player player) {
+        PlayerBandwidthHandler handler = handlers.remove(player.getUniqueId());
+        if (handler == null) return;
+
+        Channel channel = getPlayerChannel(player);
+        if (channel == null) return;
+
+        channel.eventLoop().execute(() -> {
+            try {
+                if (channel.pipeline().get(HANDLER_NAME) != null) {
+                    channel.pipeline().remove(HANDLER_NAME);
+                }
+            } catch (Exception e) {
+                // 玩家可能已断开，忽略错误
+            }
+        });
+    }
+
+    /**
+     * 更新玩家的带宽限制
+     */
+    public void updatePlayerLimit(Player player) {
+        PlayerBandwidthHandler handler = handlers.get(player.getUniqueId());
+        if (handler != null) {
+            handler.setWriteLimit(limits.get(player.getUniqueId()) * 1024);
+            handler.setAdaptive(adaptiveEnabled, adaptiveMinKBps * 1024, adaptiveHeadroom);
+            applyPassThrough(handler);
+        } else {
+            injectPlayer(player);
+        }
+    }
+
+    private void applyPassThrough(PlayerBandwidthHandler handler) {
+        handler.setPassThrough(passThroughEnabled, passThroughEscalateRatio, passThroughDeescalateRatio,
+            TimeUnit.SECONDS.toNanos(passThroughCooldownSeconds));
+    }
+
+    /**
+     * 授予玩家突发额度 (加入或切换后端服务器后调用)
+     */
+    public void grantBurst(Player player) {
+        if (!burstEnabled || burstMultiplier <= 1.0) {
+            return;
+        }
+        PlayerBandwidthHandler handler = handlers.get(player.getUniqueId());
+        if (handler == null) {
+            return;
+        }
+        long extra = (long) (limits.get(player.getUniqueId()) * 1024 * (burstMultiplier - 1.0));
+        handler.grantBurst(extra,
+            TimeUnit.SECONDS.toNanos(burstDurationSeconds),
+            TimeUnit.SECONDS.toNanos(burstDecaySeconds),
+            null);
+    }
+
+    /**
+     * 设置特定玩家的带宽限制 (KB/s) 并保存
+     */
+    public void setPlayerLimit(UUID uuid, long limitKBps) {
+        limits.set(uuid, limitKBps);
+        saveLimit(uuid, Long.toString(limitKBps));
+    }
+
+    /**
+     * 移除特定玩家的独立限制 (恢复使用默认值) 并保存
+     */
+    public void removePlayerLimit(UUID uuid) {
+        limits.remove(uuid);
+        saveLimit(uuid, null);
+    }
+
+    public long getPlayerLimit(Player player) {
+        return limits.get(player.getUniqueId());
+    }
+
+    public long getDefaultLimit() {
+        return limits.getDefault();
+    }
+
+    public PlayerBandwidthHandler getHandler(Player player) {
+        return handlers.get(player.getUniqueId());
+    }
+
+    /**
+     * 移除所有处理器
+     */
+    public void removeAllHandlers(Iterable<Player> players) {
+        for (Player player : players) {
+            removePlayer(player);
+        }
+        handlers.clear();
+    }
+
+    private synchronized void saveLimit(UUID uuid, String value) {
+        try {
+            Properties playerLimits = load(limitsFile);
+            if (value != null) {
+                playerLimits.setProperty(uuid.toString(), value);
+            } else {
+                playerLimits.remove(uuid.toString());
+            }
+            try (Writer writer = Files.newBufferedWriter(limitsFile, StandardCharsets.UTF_8)) {
+                playerLimits.store(writer, "BandwidthLimiter 每玩家带宽限制 (UUID=KB/s)");
+            }
+        } catch (IOException e) {
+            logger.error("保存玩家限制失败: {}", e.getMessage());
+        }
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,85 @@
+package com.bandwidthlimiter.velocity;
+
+import com.google.inject.Inject;
+import com.velocitypowered.api.command.CommandMeta;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.player.ServerConnectedEvent;
+import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.plugin.Plugin;
+import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.ProxyServer;
+import org.slf4j.Logger;
+
+import java.nio.file.Path;
+
+/**
+ * BandwidthLimiter 代理端 - 在 Velocity 上控制每个玩家的带宽上限
+ *
+ * 整形点位于代理面向客户端的连接上，玩家切换后端服务器时限制保持不变，
+ * 代理自身的出站流量也会被整形。
+ */
+@Plugin(
+    id = "bandwidthlimiter",
+    name = "BandwidthLimiter",
+    version = "1.0.0",
+    description = "控制每个玩家的网络带宽上限 (代理端)",
+    authors = {"BandwidthLimiter"}
+)
+public class VelocityBandwidthPlugin {
+
+    private final ProxyServer server;
+    private final Logger logger;
+    private final ProxyBandwidthManager bandwidthManager;
+
+    @Inject
+    public VelocityBandwidthPlugin(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
+        this.server = server;
+        this.logger = logger;
+        this.bandwidthManager = new ProxyBandwidthManager(logger, dataDirectory);
+    }
+
+    @Subscribe
+    public void onProxyInitialize(ProxyInitializeEvent event) {
+        bandwidthManager.loadConfig();
+
+        CommandMeta meta = server.getCommandManager().metaBuilder("bwlproxy")
+            .aliases("bwlp")
+            .plugin(this)
+            .build();
+        server.getCommandManager().register(meta, new ProxyBandwidthCommand(server, bandwidthManager));
+
+        logger.info("BandwidthLimiter (Velocity) 已启用 - 默认带宽限制: {} KB/s",
+            bandwidthManager.getDefaultLimit());
+    }
+
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event) {
+        bandwidthManager.removeAllHandlers(server.getAllPlayers());
+    }
+
+    /**
+     * 玩家登录代理后注入，此时客户端连接已完成加密和压缩设置
+     */
+    @Subscribe
+    public void onPostLogin(PostLoginEvent event) {
+        bandwidthManager.injectPlayer(event.getPlayer());
+    }
+
+    /**
+     * 切换后端服务器时客户端需要重新加载整个世界
+     */
+    @Subscribe
+    public void onServerConnected(ServerConnectedEvent event) {
+        if (event.getPreviousServer().isPresent()) {
+            bandwidthManager.grantBurst(event.getPlayer());
+        }
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        bandwidthManager.removePlayer(event.getPlayer());
+    }
+}